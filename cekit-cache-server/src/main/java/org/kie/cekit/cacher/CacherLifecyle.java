@@ -2,7 +2,9 @@ package org.kie.cekit.cacher;
 
 import io.quarkus.runtime.ShutdownEvent;
 import io.quarkus.runtime.StartupEvent;
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
 import org.kie.cekit.cacher.builds.github.GitRepository;
+import org.kie.cekit.cacher.downloads.DownloadScheduler;
 import org.kie.cekit.cacher.utils.CacherUtils;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -22,10 +24,18 @@ public class CacherLifecyle {
     @Inject
     GitRepository gitRepository;
 
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    DownloadScheduler downloadScheduler;
+
     void onStart(@Observes StartupEvent ev) throws Exception {
         log.info("Quarkus CEKit Cacher is starting, performing startup verifications...");
         gitRepository.cleanGitRepos();
         cacherUtils.startupVerifications();
+        artifactIndex.load();
+        downloadScheduler.resumeInterrupted();
         gitRepository.prepareLocalGitRepo();
         cacherUtils.preLoadFromFile();
     }
@@ -0,0 +1,231 @@
+package org.kie.cekit.cacher.artifacts;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+/**
+ * On disk catalog of the persisted artifacts, it allows the {@link ArtifactIndex} to be restored at startup
+ * without walking the artifacts directory.
+ * <p>
+ * The catalog is made of two files stored in the artifacts dir:
+ * - .catalog.snapshot: one json artifact per line, written atomically when the catalog is compacted
+ * - .catalog.journal: append only file, every add or remove operation done after the last snapshot
+ */
+@ApplicationScoped
+public class ArtifactCatalog {
+
+    static final String SNAPSHOT_FILE = ".catalog.snapshot";
+    static final String JOURNAL_FILE = ".catalog.journal";
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+    private final Jsonb jsonb = JsonbBuilder.create();
+    private FileChannel journal;
+    private long journalEntries;
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    /**
+     * Reads the snapshot and applies the journal on top of it.
+     *
+     * @return the catalog artifacts or empty if the catalog is missing or corrupt, in this case a full rescan is needed.
+     */
+    public synchronized Optional<Collection<ArtifactMetadata>> replay() {
+        Path snapshot = snapshotPath();
+        Path journalPath = journalPath();
+        if (!Files.exists(snapshot)) {
+            log.info("Artifacts catalog not found, a full rescan is needed.");
+            return Optional.empty();
+        }
+
+        Map<String, ArtifactMetadata> artifacts = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(snapshot, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ArtifactMetadata artifact = jsonb.fromJson(line, ArtifactMetadata.class);
+                artifacts.put(artifact.getChecksum(), artifact);
+            }
+        } catch (final Exception e) {
+            log.warning("Artifacts catalog snapshot is corrupt, a full rescan is needed: " + e.getMessage());
+            return Optional.empty();
+        }
+
+        if (Files.exists(journalPath)) {
+            try {
+                List<String> lines = Files.readAllLines(journalPath, StandardCharsets.UTF_8);
+                for (int i = 0; i < lines.size(); i++) {
+                    try {
+                        CatalogEntry entry = jsonb.fromJson(lines.get(i), CatalogEntry.class);
+                        entry.applyTo(artifacts);
+                    } catch (final Exception e) {
+                        if (i == lines.size() - 1) {
+                            // the last write was interrupted, everything before it is still valid.
+                            log.warning("Ignoring the incomplete last entry of the artifacts catalog journal.");
+                        } else {
+                            throw e;
+                        }
+                    }
+                }
+                journalEntries = lines.size();
+            } catch (final Exception e) {
+                log.warning("Artifacts catalog journal is corrupt, a full rescan is needed: " + e.getMessage());
+                return Optional.empty();
+            }
+        }
+        return Optional.of(artifacts.values());
+    }
+
+    /**
+     * Records a new persisted artifact
+     *
+     * @param artifact
+     */
+    public synchronized void added(ArtifactMetadata artifact) {
+        append(new CatalogEntry(CatalogEntry.ADD, artifact));
+    }
+
+    /**
+     * Records a removed artifact
+     *
+     * @param checksum
+     */
+    public synchronized void removed(String checksum) {
+        append(new CatalogEntry(CatalogEntry.REMOVE, new ArtifactMetadata(checksum, null)));
+    }
+
+    /**
+     * @return how many operations were journaled since the last snapshot
+     */
+    public synchronized long pendingEntries() {
+        return journalEntries;
+    }
+
+    /**
+     * Writes a new snapshot with the given artifacts and truncates the journal.
+     * Callers must make sure no artifact is added or removed while compacting.
+     *
+     * @param artifacts
+     */
+    public synchronized void compact(Collection<ArtifactMetadata> artifacts) {
+        Path snapshot = snapshotPath();
+        Path tmpSnapshot = snapshot.resolveSibling(SNAPSHOT_FILE + ".new");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmpSnapshot, StandardCharsets.UTF_8)) {
+                for (ArtifactMetadata artifact : new ArrayList<>(artifacts)) {
+                    writer.write(jsonb.toJson(artifact));
+                    writer.newLine();
+                }
+            }
+            Files.move(tmpSnapshot, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            closeJournal();
+            Files.deleteIfExists(journalPath());
+            journalEntries = 0;
+            log.fine("Artifacts catalog compacted with " + artifacts.size() + " artifacts.");
+        } catch (IOException e) {
+            log.warning("Failed to compact the artifacts catalog: " + e.getMessage());
+        }
+    }
+
+    private void append(CatalogEntry entry) {
+        try {
+            if (null == journal || !journal.isOpen()) {
+                journal = FileChannel.open(journalPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            BufferedWriter writer = new BufferedWriter(Channels.newWriter(journal, StandardCharsets.UTF_8.newEncoder(), -1));
+            writer.write(jsonb.toJson(entry));
+            writer.newLine();
+            writer.flush();
+            journal.force(false);
+            journalEntries++;
+        } catch (IOException e) {
+            log.warning("Failed to update the artifacts catalog journal: " + e.getMessage());
+        }
+    }
+
+    private void closeJournal() throws IOException {
+        if (null != journal) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private Path snapshotPath() {
+        return Paths.get(cacherProperties.getCacherArtifactsDir(), SNAPSHOT_FILE);
+    }
+
+    private Path journalPath() {
+        return Paths.get(cacherProperties.getCacherArtifactsDir(), JOURNAL_FILE);
+    }
+
+    /**
+     * A single journal operation
+     */
+    @RegisterForReflection
+    public static class CatalogEntry {
+
+        static final String ADD = "ADD";
+        static final String REMOVE = "REMOVE";
+
+        private String operation;
+        private ArtifactMetadata artifact;
+
+        public CatalogEntry() {
+        }
+
+        CatalogEntry(String operation, ArtifactMetadata artifact) {
+            this.operation = operation;
+            this.artifact = artifact;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public void setOperation(String operation) {
+            this.operation = operation;
+        }
+
+        public ArtifactMetadata getArtifact() {
+            return artifact;
+        }
+
+        public void setArtifact(ArtifactMetadata artifact) {
+            this.artifact = artifact;
+        }
+
+        void applyTo(Map<String, ArtifactMetadata> artifacts) {
+            if (ADD.equals(operation)) {
+                artifacts.put(artifact.getChecksum(), artifact);
+            } else if (REMOVE.equals(operation)) {
+                artifacts.remove(artifact.getChecksum());
+            } else {
+                throw new IllegalStateException("Unknown catalog operation " + operation);
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.kie.cekit.cacher.artifacts;
+
+import io.quarkus.scheduler.Scheduled;
+import org.kie.cekit.cacher.builds.yaml.YamlFilesHelper;
+import org.kie.cekit.cacher.builds.yaml.pojo.Artifact;
+import org.kie.cekit.cacher.builds.yaml.pojo.Modules;
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.CacherUtils;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the artifacts within the configured quota. Once their size crosses the high-water mark the coldest ones,
+ * the least recently or the least frequently served, are removed until the size is back to the low-water mark.
+ * Artifacts referenced by the module.yaml files of the git checkouts are pinned and never evicted.
+ */
+@ApplicationScoped
+public class ArtifactEvictor {
+
+    private static final String MODULE_FILE = "module.yaml";
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    CacherUtils cacherUtils;
+
+    @Inject
+    YamlFilesHelper yamlFilesHelper;
+
+    @Scheduled(every = "5m", delay = 5, delayUnit = TimeUnit.MINUTES)
+    public synchronized void evictIfNeeded() {
+        long quota = cacherProperties.artifactsQuota();
+        if (quota <= 0) {
+            return;
+        }
+        long usage = usage(artifactIndex.artifacts());
+        if (usage <= quota / 100 * cacherProperties.artifactsQuotaHigh()) {
+            return;
+        }
+        long target = quota / 100 * cacherProperties.artifactsQuotaLow();
+        Set<String> pinned;
+        try {
+            pinned = pinned();
+        } catch (IOException | UncheckedIOException e) {
+            log.warning("Failed to read the module files, nothing evicted: " + e.getMessage());
+            return;
+        }
+        List<ArtifactMetadata> evicted = coldest(artifactIndex.artifacts(), pinned, usage - target, cacherProperties.artifactsEvictionLfu());
+        log.info("Artifacts take " + usage / 1024 / 1024 + "MB of the " + quota / 1024 / 1024 + "MB quota, evicting "
+                         + evicted.size() + " artifacts, " + pinned.size() + " checksums pinned.");
+        for (ArtifactMetadata artifact : evicted) {
+            log.info("Evicting " + artifact.getFileName() + " (" + artifact.getChecksum() + "), served "
+                             + artifact.getHitCount() + " times.");
+            cacherUtils.deleteArtifact(artifact.getChecksum());
+        }
+        if (usage(artifactIndex.artifacts()) > target) {
+            log.warning("Artifacts still above " + cacherProperties.artifactsQuotaLow() + "% of the quota, the pinned ones can not be evicted.");
+        }
+    }
+
+    /**
+     * @param artifacts candidates
+     * @param pinned    md5 checksums that can not be evicted
+     * @param toFree    bytes to free
+     * @param lfu       true to evict the least frequently served first, otherwise the least recently served
+     * @return the coldest artifacts that free the given bytes, or all the unpinned ones if they are not enough
+     */
+    static List<ArtifactMetadata> coldest(Collection<ArtifactMetadata> artifacts, Set<String> pinned, long toFree, boolean lfu) {
+        Comparator<ArtifactMetadata> recency = Comparator.comparingLong(ArtifactEvictor::lastUse);
+        Comparator<ArtifactMetadata> order = lfu ? Comparator.comparingLong(ArtifactMetadata::getHitCount).thenComparing(recency) : recency;
+        List<ArtifactMetadata> evicted = new ArrayList<>();
+        long freed = 0;
+        for (ArtifactMetadata artifact : artifacts.stream().sorted(order).collect(Collectors.toList())) {
+            if (freed >= toFree) {
+                break;
+            }
+            if (!pinned.contains(artifact.getChecksum())) {
+                evicted.add(artifact);
+                freed += artifact.getSize();
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return md5 checksums of the artifacts referenced by the module.yaml files of the git checkouts
+     */
+    Set<String> pinned() throws IOException {
+        Set<String> pinned = new HashSet<>();
+        Path gitDir = Paths.get(cacherProperties.getGitDir());
+        if (!Files.isDirectory(gitDir)) {
+            return pinned;
+        }
+        try (Stream<Path> files = Files.walk(gitDir)) {
+            files.filter(file -> MODULE_FILE.equals(file.getFileName().toString()))
+                    .filter(file -> !file.toString().contains("/.git/"))
+                    .map(file -> yamlFilesHelper.load(file.toString()))
+                    .filter(module -> null != module && null != module.getArtifacts())
+                    .map(Modules::getArtifacts)
+                    .flatMap(List::stream)
+                    .map(Artifact::getMd5)
+                    .filter(md5 -> null != md5 && !md5.isEmpty())
+                    .forEach(md5 -> pinned.add(md5.toLowerCase()));
+        }
+        return pinned;
+    }
+
+    private static long usage(Collection<ArtifactMetadata> artifacts) {
+        return artifacts.stream().mapToLong(ArtifactMetadata::getSize).sum();
+    }
+
+    /**
+     * @return last time the artifact was served, or persisted if it was never served
+     */
+    private static long lastUse(ArtifactMetadata artifact) {
+        return Math.max(artifact.getLastAccess(), artifact.getLastModified());
+    }
+}
@@ -0,0 +1,475 @@
+package org.kie.cekit.cacher.artifacts;
+
+import io.quarkus.scheduler.Scheduled;
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * In memory index of the persisted artifacts.
+ * It is restored once at startup from the {@link ArtifactCatalog} and then kept up to date by the download and
+ * delete operations, so lookups never need to touch the filesystem. Every change is journaled on the catalog.
+ * <p>
+ * Reads are lock free, writes are serialized so the checksum and file name maps are always updated together.
+ */
+@ApplicationScoped
+public class ArtifactIndex {
+
+    // journal size that triggers a compaction regardless of the scheduled one
+    private static final int MAX_JOURNAL_ENTRIES = 1000;
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    // checksum -> artifact
+    private final Map<String, ArtifactMetadata> byChecksum = new ConcurrentHashMap<>();
+    // sha1/sha256 -> md5, artifacts can be addressed by any of their digests
+    private final Map<String, String> aliases = new ConcurrentHashMap<>();
+    // file name -> checksums, the same file name can be persisted with different content
+    private final Map<String, Set<String>> byFileName = new ConcurrentHashMap<>();
+    // secondary indexes used by the listing: sorted file names and nightly build information
+    private final ConcurrentSkipListMap<String, String> byName = new ConcurrentSkipListMap<>();
+    private final Map<String, Set<String>> byVersion = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byBranch = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byBuildDate = new ConcurrentHashMap<>();
+    // file names being downloaded into the tmp dir
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+    // last access times are not journaled, they are saved with the next snapshot
+    private volatile boolean accessesPending;
+    // bumped on every change of the listed artifacts, the epoch tells apart generations of different runs
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong generation = new AtomicLong();
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    ArtifactCatalog artifactCatalog;
+
+    @Inject
+    ArtifactSidecar artifactSidecar;
+
+    /**
+     * Restores the index from the {@link ArtifactCatalog}, the artifacts directory is only walked when the catalog
+     * is missing or corrupt.
+     */
+    public synchronized void load() {
+        Optional<Collection<ArtifactMetadata>> catalog = artifactCatalog.replay();
+        if (catalog.isPresent()) {
+            clear();
+            catalog.get().forEach(this::put);
+            log.info("Artifacts index restored from catalog with " + byChecksum.size() + " artifacts.");
+            if (artifactCatalog.pendingEntries() > 0) {
+                artifactCatalog.compact(byChecksum.values());
+            }
+        } else {
+            rescan();
+        }
+    }
+
+    /**
+     * Walks the artifacts directory and rebuilds the index and the catalog from it.
+     * Expected layout is ${base.dir}/artifacts/{checksum}/{fileName}, the tmp dir is ignored.
+     * Digests are read from the {@link ArtifactSidecar}, artifacts without it only get the md5 until they are
+     * digested again.
+     */
+    public synchronized void rescan() {
+        clear();
+
+        Path artifactsDir = Paths.get(cacherProperties.getCacherArtifactsDir());
+        Path tmpDir = Paths.get(cacherProperties.getArtifactsTmpDir());
+        try (Stream<Path> dirs = Files.list(artifactsDir)) {
+            dirs.filter(Files::isDirectory)
+                    .filter(dir -> !dir.equals(tmpDir))
+                    .forEach(dir -> {
+                        try (Stream<Path> files = Files.list(dir)) {
+                            files.filter(Files::isRegularFile)
+                                    .filter(file -> !ArtifactSidecar.isSidecar(file))
+                                    .findFirst()
+                                    .ifPresent(file -> put(scan(dir.getFileName().toString(), file)));
+                        } catch (IOException e) {
+                            log.warning("Failed to read artifact directory " + dir + ": " + e.getMessage());
+                        }
+                    });
+        } catch (IOException e) {
+            log.warning("Failed to load the artifacts index: " + e.getMessage());
+        }
+        artifactCatalog.compact(byChecksum.values());
+        log.info("Artifacts index rebuilt from the filesystem with " + byChecksum.size() + " artifacts.");
+    }
+
+    /**
+     * Periodically folds the catalog journal into a new snapshot so restarts only replay a few entries.
+     */
+    @Scheduled(every = "1h", delay = 1, delayUnit = TimeUnit.HOURS)
+    public synchronized void compactCatalog() {
+        if (artifactCatalog.pendingEntries() > 0 || accessesPending) {
+            accessesPending = false;
+            artifactCatalog.compact(byChecksum.values());
+        }
+    }
+
+    /**
+     * Adds or replaces the given artifact
+     *
+     * @param artifact
+     */
+    public synchronized void add(ArtifactMetadata artifact) {
+        unindex(artifact.getChecksum());
+        put(artifact);
+        artifactCatalog.added(artifact);
+        compactIfNeeded();
+    }
+
+    /**
+     * Replaces an indexed artifact, used to update its metadata.
+     * Nothing is done if the artifact was removed in the meantime.
+     *
+     * @param artifact
+     * @return true if the artifact was replaced
+     */
+    public synchronized boolean replace(ArtifactMetadata artifact) {
+        if (!byChecksum.containsKey(artifact.getChecksum())) {
+            return false;
+        }
+        add(artifact);
+        return true;
+    }
+
+    /**
+     * Records that the given artifact was just served, counting the hit.
+     * Only the memory is updated, it is written to disk by the next catalog compaction.
+     *
+     * @param checksum md5, sha1 or sha256
+     */
+    public void touch(String checksum) {
+        get(checksum).ifPresent(artifact -> {
+            artifact.served(System.currentTimeMillis());
+            accessesPending = true;
+        });
+    }
+
+    /**
+     * Removes the artifact with the given checksum
+     *
+     * @param checksum md5, sha1 or sha256
+     * @return the removed artifact, if it was indexed
+     */
+    public synchronized Optional<ArtifactMetadata> remove(String checksum) {
+        Optional<ArtifactMetadata> removed = get(checksum).flatMap(artifact -> unindex(artifact.getChecksum()));
+        if (removed.isPresent()) {
+            artifactCatalog.removed(removed.get().getChecksum());
+            compactIfNeeded();
+        }
+        return removed;
+    }
+
+    /**
+     * @param checksum md5, sha1 or sha256
+     * @return the artifact with the given checksum
+     */
+    public Optional<ArtifactMetadata> get(String checksum) {
+        if (null == checksum) {
+            return Optional.empty();
+        }
+        String normalized = checksum.toLowerCase();
+        ArtifactMetadata artifact = byChecksum.get(normalized);
+        if (null == artifact) {
+            String md5 = aliases.get(normalized);
+            artifact = null == md5 ? null : byChecksum.get(md5);
+        }
+        return Optional.ofNullable(artifact);
+    }
+
+    /**
+     * @param checksum md5, sha1 or sha256
+     * @return true if there is a persisted artifact with the given checksum
+     */
+    public boolean contains(String checksum) {
+        return get(checksum).isPresent();
+    }
+
+    /**
+     * @param fileName
+     * @return true if there is at least one persisted artifact with the given file name
+     */
+    public boolean containsFileName(String fileName) {
+        return byFileName.containsKey(fileName);
+    }
+
+    /**
+     * @param fileName
+     * @return the checksums of the persisted artifacts with the given file name
+     */
+    public Set<String> checksumsOf(String fileName) {
+        return Collections.unmodifiableSet(byFileName.getOrDefault(fileName, Collections.emptySet()));
+    }
+
+    /**
+     * @param fileName
+     * @return the most recently persisted artifact with the given file name
+     */
+    public Optional<ArtifactMetadata> latestOf(String fileName) {
+        return checksumsOf(fileName).stream()
+                .map(byChecksum::get)
+                .filter(Objects::nonNull)
+                .max(Comparator.comparingLong(ArtifactMetadata::getLastModified));
+    }
+
+    /**
+     * @param artifact
+     * @return where the given artifact is persisted
+     */
+    public Path pathOf(ArtifactMetadata artifact) {
+        return Paths.get(cacherProperties.getCacherArtifactsDir(), artifact.getChecksum(), artifact.getFileName());
+    }
+
+    /**
+     * @return all persisted artifacts
+     */
+    public Collection<ArtifactMetadata> artifacts() {
+        return Collections.unmodifiableCollection(byChecksum.values());
+    }
+
+    /**
+     * Lists the artifacts matching the given query, sorted and starting after the query cursor.
+     * When only the name is filtered the artifacts are lazily read from the sorted name index, otherwise the
+     * smallest matching secondary index is filtered and sorted.
+     *
+     * @param query
+     * @return the matching artifacts, in order
+     */
+    public Stream<ArtifactMetadata> query(ArtifactQuery query) {
+        if (query.getSort() == ArtifactQuery.Sort.NAME && !query.hasSecondaryFilters()) {
+            NavigableMap<String, String> range = nameRange(query.getNamePrefix(), query.getCursor(), query.isDescending());
+            if (query.isDescending()) {
+                range = range.descendingMap();
+            }
+            return range.values().stream()
+                    .map(byChecksum::get)
+                    .filter(Objects::nonNull);
+        }
+
+        Comparator<String> order = query.isDescending() ? Comparator.reverseOrder() : Comparator.naturalOrder();
+        return candidates(query).stream()
+                .map(byChecksum::get)
+                .filter(Objects::nonNull)
+                .filter(query::matches)
+                .filter(query::isAfterCursor)
+                .sorted(Comparator.comparing(query::sortKey, order));
+    }
+
+    /**
+     * The name index narrowed to the prefix and started after the cursor. A cursor outside of the prefix range,
+     * i.e. stale or from another listing, is clamped to it: before the range all of it is listed, after it nothing.
+     */
+    private NavigableMap<String, String> nameRange(String prefix, String cursor, boolean descending) {
+        if (null == prefix) {
+            if (null == cursor) {
+                return byName;
+            }
+            return descending ? byName.headMap(cursor, false) : byName.tailMap(cursor, false);
+        }
+        String from = prefix;
+        String to = prefix + Character.MAX_VALUE;
+        boolean fromInclusive = true;
+        boolean toInclusive = false;
+        if (null != cursor) {
+            if (descending) {
+                if (cursor.compareTo(from) <= 0) {
+                    return Collections.emptyNavigableMap();
+                }
+                if (cursor.compareTo(to) <= 0) {
+                    to = cursor;
+                }
+            } else {
+                if (cursor.compareTo(to) >= 0) {
+                    return Collections.emptyNavigableMap();
+                }
+                if (cursor.compareTo(from) >= 0) {
+                    from = cursor;
+                    fromInclusive = false;
+                }
+            }
+        }
+        return byName.subMap(from, fromInclusive, to, toInclusive);
+    }
+
+    /**
+     * Flags the given file as being downloaded
+     *
+     * @param fileName
+     * @return false if the file was already being downloaded
+     */
+    public boolean markInProgress(String fileName) {
+        if (inProgress.add(fileName)) {
+            generation.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Clears the in progress flag of the given file
+     *
+     * @param fileName
+     */
+    public void clearInProgress(String fileName) {
+        if (inProgress.remove(fileName)) {
+            generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param fileName
+     * @return true if the given file is being downloaded
+     */
+    public boolean isInProgress(String fileName) {
+        return inProgress.contains(fileName);
+    }
+
+    /**
+     * @return the file names being downloaded
+     */
+    public List<String> inProgressFiles() {
+        return new ArrayList<>(inProgress);
+    }
+
+    /**
+     * Version of the listed artifacts, it changes whenever an artifact is added, replaced, removed or starts or
+     * finishes downloading. Read it before reading the artifacts, so a concurrent change is never hidden.
+     *
+     * @return opaque version of the index content
+     */
+    public String generation() {
+        return Long.toHexString(epoch) + "-" + generation.get();
+    }
+
+    /**
+     * @return number of persisted artifacts
+     */
+    public int size() {
+        return byChecksum.size();
+    }
+
+    private Optional<ArtifactMetadata> unindex(String checksum) {
+        ArtifactMetadata removed = byChecksum.remove(checksum);
+        if (null != removed) {
+            if (null != removed.getSha1()) {
+                aliases.remove(removed.getSha1());
+            }
+            if (null != removed.getSha256()) {
+                aliases.remove(removed.getSha256());
+            }
+            removeFrom(byFileName, removed.getFileName(), checksum);
+            byName.remove(ArtifactQuery.nameKey(removed));
+            removeFrom(byVersion, removed.getVersion(), checksum);
+            removeFrom(byBranch, removed.getBranch(), checksum);
+            removeFrom(byBuildDate, removed.getBuildDate(), checksum);
+            generation.incrementAndGet();
+        }
+        return Optional.ofNullable(removed);
+    }
+
+    private void compactIfNeeded() {
+        if (artifactCatalog.pendingEntries() >= MAX_JOURNAL_ENTRIES) {
+            artifactCatalog.compact(byChecksum.values());
+        }
+    }
+
+    private ArtifactMetadata scan(String checksum, Path file) {
+        ArtifactMetadata artifact = artifactSidecar.read(file.getParent())
+                .filter(metadata -> checksum.equals(metadata.getChecksum()))
+                .orElse(new ArtifactMetadata(checksum, file.getFileName().toString()));
+        artifact.setFileName(file.getFileName().toString());
+        try {
+            artifact.setSize(Files.size(file));
+            artifact.setLastModified(Files.getLastModifiedTime(file).toMillis());
+        } catch (IOException e) {
+            log.warning("Failed to read attributes of " + file + ": " + e.getMessage());
+        }
+        return artifact;
+    }
+
+    private Collection<String> candidates(ArtifactQuery query) {
+        Collection<String> candidates = byChecksum.keySet();
+        if (null != query.getVersion()) {
+            candidates = smallest(candidates, byVersion.getOrDefault(query.getVersion(), Collections.emptySet()));
+        }
+        if (null != query.getBranch()) {
+            candidates = smallest(candidates, byBranch.getOrDefault(query.getBranch(), Collections.emptySet()));
+        }
+        if (null != query.getBuildDate()) {
+            candidates = smallest(candidates, byBuildDate.getOrDefault(query.getBuildDate(), Collections.emptySet()));
+        }
+        return new ArrayList<>(candidates);
+    }
+
+    private Collection<String> smallest(Collection<String> a, Collection<String> b) {
+        return a.size() <= b.size() ? a : b;
+    }
+
+    private void clear() {
+        byChecksum.clear();
+        aliases.clear();
+        byFileName.clear();
+        byName.clear();
+        byVersion.clear();
+        byBranch.clear();
+        byBuildDate.clear();
+        generation.incrementAndGet();
+    }
+
+    private static void addTo(Map<String, Set<String>> index, String key, String checksum) {
+        if (null != key) {
+            index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(checksum);
+        }
+    }
+
+    private static void removeFrom(Map<String, Set<String>> index, String key, String checksum) {
+        if (null != key) {
+            index.computeIfPresent(key, (k, checksums) -> {
+                checksums.remove(checksum);
+                return checksums.isEmpty() ? null : checksums;
+            });
+        }
+    }
+
+    private void put(ArtifactMetadata artifact) {
+        byChecksum.put(artifact.getChecksum(), artifact);
+        if (null != artifact.getSha1()) {
+            aliases.put(artifact.getSha1(), artifact.getChecksum());
+        }
+        if (null != artifact.getSha256()) {
+            aliases.put(artifact.getSha256(), artifact.getChecksum());
+        }
+        addTo(byFileName, artifact.getFileName(), artifact.getChecksum());
+        byName.put(ArtifactQuery.nameKey(artifact), artifact.getChecksum());
+        addTo(byVersion, artifact.getVersion(), artifact.getChecksum());
+        addTo(byBranch, artifact.getBranch(), artifact.getChecksum());
+        addTo(byBuildDate, artifact.getBuildDate(), artifact.getChecksum());
+        generation.incrementAndGet();
+    }
+}
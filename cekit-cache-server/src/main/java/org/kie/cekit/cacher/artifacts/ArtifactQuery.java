@@ -0,0 +1,188 @@
+package org.kie.cekit.cacher.artifacts;
+
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Filters, sorting and cursor of an artifact listing.
+ * The cursor is the opaque sort key of the last artifact returned, the next page starts right after it.
+ */
+public class ArtifactQuery {
+
+    public enum Sort {
+        NAME, BUILD_DATE, SIZE;
+
+        /**
+         * @param value name, buildDate or size, case insensitive
+         * @return the matching sort
+         */
+        public static Sort parse(String value) {
+            if (null == value || value.isEmpty()) {
+                return NAME;
+            }
+            for (Sort sort : values()) {
+                if (sort.name().replace("_", "").equalsIgnoreCase(value)) {
+                    return sort;
+                }
+            }
+            throw new IllegalArgumentException("Invalid sort " + value + ", valid values are name, buildDate and size.");
+        }
+    }
+
+    private static final char SEPARATOR = '\u0000';
+
+    private String namePrefix;
+    private String version;
+    private String branch;
+    private String buildDate;
+    private Sort sort = Sort.NAME;
+    private boolean descending;
+    private String cursor;
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public ArtifactQuery setNamePrefix(String namePrefix) {
+        this.namePrefix = emptyToNull(namePrefix);
+        return this;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public ArtifactQuery setVersion(String version) {
+        this.version = emptyToNull(version);
+        return this;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public ArtifactQuery setBranch(String branch) {
+        this.branch = emptyToNull(branch);
+        return this;
+    }
+
+    public String getBuildDate() {
+        return buildDate;
+    }
+
+    public ArtifactQuery setBuildDate(String buildDate) {
+        this.buildDate = emptyToNull(buildDate);
+        return this;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public ArtifactQuery setSort(Sort sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public ArtifactQuery setDescending(boolean descending) {
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * @return decoded cursor, the sort key of the last artifact of the previous page
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @param cursor as returned by {@link #cursorOf(ArtifactMetadata)}
+     * @return this query
+     */
+    public ArtifactQuery setCursor(String cursor) {
+        if (null == cursor || cursor.isEmpty()) {
+            this.cursor = null;
+        } else {
+            try {
+                this.cursor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor " + cursor);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return true if only the name is filtered, so the sorted name index can be used directly
+     */
+    public boolean hasSecondaryFilters() {
+        return null != version || null != branch || null != buildDate;
+    }
+
+    /**
+     * @param artifact
+     * @return true if the artifact matches all filters
+     */
+    public boolean matches(ArtifactMetadata artifact) {
+        return (null == namePrefix || artifact.getFileName().startsWith(namePrefix))
+                && (null == version || version.equals(artifact.getVersion()))
+                && (null == branch || branch.equals(artifact.getBranch()))
+                && (null == buildDate || buildDate.equals(artifact.getBuildDate()));
+    }
+
+    /**
+     * Sort key of the given artifact, unique and comparable as a plain string.
+     *
+     * @param artifact
+     * @return the artifact sort key
+     */
+    public String sortKey(ArtifactMetadata artifact) {
+        switch (sort) {
+            case BUILD_DATE:
+                return (null == artifact.getBuildDate() ? "" : artifact.getBuildDate()) + SEPARATOR + nameKey(artifact);
+            case SIZE:
+                return String.format("%019d", artifact.getSize()) + SEPARATOR + nameKey(artifact);
+            default:
+                return nameKey(artifact);
+        }
+    }
+
+    /**
+     * @param artifact
+     * @return true if the artifact comes after the cursor, considering the sort order
+     */
+    public boolean isAfterCursor(ArtifactMetadata artifact) {
+        if (null == cursor) {
+            return true;
+        }
+        int comparison = sortKey(artifact).compareTo(cursor);
+        return descending ? comparison < 0 : comparison > 0;
+    }
+
+    /**
+     * @param artifact last artifact of a page
+     * @return the cursor to fetch the next page
+     */
+    public String cursorOf(ArtifactMetadata artifact) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sortKey(artifact).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param artifact
+     * @return key used by the sorted name index
+     */
+    static String nameKey(ArtifactMetadata artifact) {
+        return artifact.getFileName() + SEPARATOR + artifact.getChecksum();
+    }
+
+    private static String emptyToNull(String value) {
+        return null == value || value.isEmpty() ? null : value;
+    }
+}
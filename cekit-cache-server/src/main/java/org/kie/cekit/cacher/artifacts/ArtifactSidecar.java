@@ -0,0 +1,71 @@
+package org.kie.cekit.cacher.artifacts;
+
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+/**
+ * Metadata file stored next to each artifact: ${base.dir}/artifacts/{checksum}/.metadata.json
+ * It keeps the information that can not be recovered from the file itself, like all its digests,
+ * so a full rescan does not need to hash the artifacts again.
+ */
+@ApplicationScoped
+public class ArtifactSidecar {
+
+    static final String SIDECAR_FILE = ".metadata.json";
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+    private final Jsonb jsonb = JsonbBuilder.create();
+
+    /**
+     * Writes the metadata on the given artifact directory
+     *
+     * @param artifactDir
+     * @param artifact
+     */
+    public void write(Path artifactDir, ArtifactMetadata artifact) {
+        Path sidecar = artifactDir.resolve(SIDECAR_FILE);
+        Path tmp = artifactDir.resolve(SIDECAR_FILE + ".new");
+        try {
+            Files.write(tmp, jsonb.toJson(artifact).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warning("Failed to write metadata for " + artifact.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param artifactDir
+     * @return the metadata of the given artifact directory, if present and readable
+     */
+    public Optional<ArtifactMetadata> read(Path artifactDir) {
+        Path sidecar = artifactDir.resolve(SIDECAR_FILE);
+        if (!Files.exists(sidecar)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(jsonb.fromJson(new String(Files.readAllBytes(sidecar), StandardCharsets.UTF_8), ArtifactMetadata.class));
+        } catch (final Exception e) {
+            log.warning("Ignoring unreadable metadata " + sidecar + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param file
+     * @return true if the given file is a metadata file and not an artifact
+     */
+    public static boolean isSidecar(Path file) {
+        return file.getFileName().toString().startsWith(SIDECAR_FILE);
+    }
+}
@@ -0,0 +1,133 @@
+package org.kie.cekit.cacher.artifacts;
+
+import io.quarkus.scheduler.Scheduled;
+import org.kie.cekit.cacher.bandwidth.TokenBucket;
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.CacherUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the last nightly builds of every version and branch. The artifacts of older build dates, unless pinned by
+ * a module.yaml file of the git checkouts, are removed in background at a limited rate so the purge does not
+ * compete with the artifacts being served.
+ */
+@ApplicationScoped
+public class BuildRetention {
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final AtomicBoolean purging = new AtomicBoolean();
+    private ExecutorService purger;
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    ArtifactEvictor artifactEvictor;
+
+    @Inject
+    CacherUtils cacherUtils;
+
+    @PostConstruct
+    void init() {
+        purger = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cacher-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        purger.shutdownNow();
+    }
+
+    /**
+     * Starts purging the expired nightly builds, nothing is done if a purge is still running
+     */
+    @Scheduled(every = "6h", delay = 30, delayUnit = TimeUnit.MINUTES)
+    public void purge() {
+        int keep = cacherProperties.nightlyRetentionBuilds();
+        if (keep <= 0 || !purging.compareAndSet(false, true)) {
+            return;
+        }
+        List<ArtifactMetadata> expired;
+        try {
+            expired = expired(artifactIndex.artifacts(), keep, artifactEvictor.pinned());
+        } catch (IOException | UncheckedIOException e) {
+            log.warning("Failed to read the module files, no nightly build purged: " + e.getMessage());
+            purging.set(false);
+            return;
+        }
+        if (expired.isEmpty()) {
+            purging.set(false);
+            return;
+        }
+        log.info("Purging " + expired.size() + " artifacts of nightly builds older than the last " + keep + ".");
+        purger.submit(() -> {
+            try {
+                TokenBucket rate = new TokenBucket(cacherProperties.nightlyRetentionPurgeRate());
+                for (ArtifactMetadata artifact : expired) {
+                    rate.acquire(artifact.getSize());
+                    log.info("Purging " + artifact.getFileName() + " of the " + artifact.getBuildDate() + " build.");
+                    cacherUtils.deleteArtifact(artifact.getChecksum());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                purging.set(false);
+            }
+        });
+    }
+
+    /**
+     * @param artifacts all artifacts, only the ones with a build date are considered
+     * @param keep      build dates kept for each version and branch
+     * @param pinned    md5 checksums that are never purged
+     * @return the artifacts of the build dates older than the last ones kept of their version and branch
+     */
+    static List<ArtifactMetadata> expired(Collection<ArtifactMetadata> artifacts, int keep, Set<String> pinned) {
+        Map<String, List<ArtifactMetadata>> builds = artifacts.stream()
+                .filter(artifact -> null != artifact.getBuildDate() && !artifact.getBuildDate().isEmpty())
+                .collect(Collectors.groupingBy(artifact -> artifact.getVersion() + "/" + artifact.getBranch(), TreeMap::new, Collectors.toList()));
+        List<ArtifactMetadata> expired = new ArrayList<>();
+        builds.values().forEach(build -> {
+            // build dates are yyyyMMdd, the most recent ones come first
+            Set<String> kept = build.stream()
+                    .map(ArtifactMetadata::getBuildDate)
+                    .distinct()
+                    .sorted(Comparator.reverseOrder())
+                    .limit(keep)
+                    .collect(Collectors.toSet());
+            build.stream()
+                    .filter(artifact -> !kept.contains(artifact.getBuildDate()))
+                    .filter(artifact -> !pinned.contains(artifact.getChecksum()))
+                    .forEach(expired::add);
+        });
+        return expired;
+    }
+}
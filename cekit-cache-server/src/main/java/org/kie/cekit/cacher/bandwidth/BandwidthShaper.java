@@ -0,0 +1,124 @@
+package org.kie.cekit.cacher.bandwidth;
+
+import org.kie.cekit.cacher.downloads.DownloadPriority;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.lang.invoke.MethodHandles;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Limits the bandwidth used by the downloads so they do not starve the artifacts being served.
+ * <p>
+ * Downloads take their bytes from a bucket shared by all of them and from the bucket of their class, see
+ * {@link DownloadPriority}. While artifacts are being served and the bandwidth capacity is known, the downloads
+ * are limited to the part of the capacity that is not reserved for serving.
+ */
+@ApplicationScoped
+public class BandwidthShaper {
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    // all limits are unlimited until configured
+    private final TokenBucket downloads = new TokenBucket(0);
+    private final Map<DownloadPriority, TokenBucket> classes = new EnumMap<>(DownloadPriority.class);
+    private final AtomicInteger serving = new AtomicInteger();
+    private long downloadLimit;
+    private long capacity;
+    private int servingShare;
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    public BandwidthShaper() {
+        for (DownloadPriority priority : DownloadPriority.values()) {
+            classes.put(priority, new TokenBucket(0));
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        downloadLimit = cacherProperties.downloadBandwidth();
+        capacity = cacherProperties.bandwidthCapacity();
+        servingShare = cacherProperties.servingShare();
+        for (DownloadPriority priority : DownloadPriority.values()) {
+            long limit = cacherProperties.downloadBandwidth(priority.name());
+            classes.get(priority).setRate(limit);
+            if (limit > 0) {
+                log.info(priority + " downloads limited to " + limit / 1024 + "KB/s.");
+            }
+        }
+        updateDownloadRate();
+        if (downloadLimit > 0) {
+            log.info("Downloads limited to " + downloadLimit / 1024 + "KB/s.");
+        }
+        if (capacity > 0) {
+            log.info(servingShare + "% of " + capacity / 1024 + "KB/s reserved to serve artifacts.");
+        }
+    }
+
+    /**
+     * Accounts bytes received by a download, blocking the download thread as long as needed to keep it under the
+     * limits. An interrupted thread returns right away with its interrupt flag set.
+     *
+     * @param priority class of the download, null if unknown
+     * @param bytes
+     */
+    public void downloaded(DownloadPriority priority, long bytes) {
+        try {
+            long now = System.nanoTime();
+            long wait = downloads.take(bytes, now);
+            if (null != priority) {
+                wait = Math.max(wait, classes.get(priority).take(bytes, now));
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Called when an artifact starts being served
+     */
+    public void servingStarted() {
+        if (serving.getAndIncrement() == 0) {
+            updateDownloadRate();
+        }
+    }
+
+    /**
+     * Called when an artifact was served, successfully or not
+     */
+    public void servingFinished() {
+        if (serving.decrementAndGet() == 0) {
+            updateDownloadRate();
+        }
+    }
+
+    /**
+     * @return the current limit of all downloads together in bytes per second, 0 if unlimited
+     */
+    public long downloadRate() {
+        return downloads.getRate();
+    }
+
+    private synchronized void updateDownloadRate() {
+        long rate = downloadLimit;
+        if (serving.get() > 0 && capacity > 0) {
+            long available = Math.max(1, capacity * (100 - servingShare) / 100);
+            rate = rate > 0 ? Math.min(rate, available) : available;
+        }
+        if (rate != downloads.getRate()) {
+            log.fine("Downloads bandwidth set to " + (rate > 0 ? rate / 1024 + "KB/s" : "unlimited"));
+            downloads.setRate(rate);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.kie.cekit.cacher.bandwidth;
+
+import org.kie.cekit.cacher.objects.ServingStatus;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Caps the artifacts sent at the same time, to all clients and to each client address, so a burst of requests
+ * from one client does not take the serving down for everyone, and optionally how many requests per second are
+ * accepted. Requests over the limits are rejected right away instead of queued.
+ */
+@ApplicationScoped
+public class ServingLimiter {
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final Map<String, Integer> clients = new ConcurrentHashMap<>();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejectedBusy = new AtomicLong();
+    private final AtomicLong rejectedClient = new AtomicLong();
+    private final AtomicLong rejectedRate = new AtomicLong();
+    // requests per second, unlimited until configured
+    TokenBucket requests = new TokenBucket(0);
+    int maxTransfers = Integer.MAX_VALUE;
+    int maxPerClient = Integer.MAX_VALUE;
+    int retryAfter = 10;
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @PostConstruct
+    void init() {
+        maxTransfers = cacherProperties.servingMaxTransfers();
+        maxPerClient = cacherProperties.servingMaxPerClient();
+        retryAfter = cacherProperties.servingRetryAfter();
+        requests = new TokenBucket(cacherProperties.servingRate());
+        log.info("Serving at most " + maxTransfers + " artifacts at once, " + maxPerClient + " per client"
+                         + (requests.getRate() > 0 ? ", " + requests.getRate() + " requests per second." : "."));
+    }
+
+    /**
+     * Takes a transfer slot, it must be given back with {@link #release(String)}
+     *
+     * @param client address of the client
+     * @return false if the client or the cacher are already sending as many artifacts as allowed, or if the
+     * request rate is exceeded
+     */
+    public boolean tryAcquire(String client) {
+        if (!requests.tryTake(1, System.nanoTime())) {
+            rejectedRate.incrementAndGet();
+            return false;
+        }
+        // the client slot is reserved first, so a client over its own limit never holds a global slot, even briefly
+        boolean[] taken = new boolean[1];
+        clients.compute(client, (key, count) -> {
+            int current = null == count ? 0 : count;
+            if (current >= maxPerClient) {
+                return count;
+            }
+            taken[0] = true;
+            return current + 1;
+        });
+        if (!taken[0]) {
+            rejectedClient.incrementAndGet();
+            return false;
+        }
+        if (active.incrementAndGet() > maxTransfers) {
+            active.decrementAndGet();
+            clients.computeIfPresent(client, (key, count) -> count > 1 ? count - 1 : null);
+            rejectedBusy.incrementAndGet();
+            return false;
+        }
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Gives back the slot taken by the given client
+     */
+    public void release(String client) {
+        clients.computeIfPresent(client, (key, count) -> count > 1 ? count - 1 : null);
+        active.decrementAndGet();
+    }
+
+    /**
+     * @return seconds a rejected client is asked to wait before trying again
+     */
+    public int retryAfter() {
+        return retryAfter;
+    }
+
+    public ServingStatus status() {
+        ServingStatus status = new ServingStatus();
+        status.setActiveTransfers(active.get());
+        status.setMaxTransfers(maxTransfers);
+        status.setMaxPerClient(maxPerClient);
+        status.setClients(new TreeMap<>(clients));
+        status.setAccepted(accepted.get());
+        status.setRejectedBusy(rejectedBusy.get());
+        status.setRejectedClient(rejectedClient.get());
+        status.setMaxRequestRate(requests.getRate());
+        status.setRejectedRate(rejectedRate.get());
+        return status;
+    }
+}
@@ -0,0 +1,93 @@
+package org.kie.cekit.cacher.bandwidth;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket holding up to one second worth of bytes at the configured rate.
+ * A taker can go into debt, taking more bytes than the bucket holds, and waits until the debt is paid back,
+ * so the rate holds whatever the size of the chunks taken.
+ */
+public class TokenBucket {
+
+    // bytes per second, 0 if unlimited
+    private long rate;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    public TokenBucket(long rate) {
+        this.rate = Math.max(rate, 0);
+        this.tokens = this.rate;
+    }
+
+    /**
+     * @param rate bytes per second, 0 if unlimited
+     */
+    public synchronized void setRate(long rate) {
+        refill(System.nanoTime());
+        this.rate = Math.max(rate, 0);
+        tokens = Math.min(tokens, this.rate);
+    }
+
+    public synchronized long getRate() {
+        return rate;
+    }
+
+    /**
+     * Takes the given bytes from the bucket
+     *
+     * @param bytes
+     * @param now   in nanoseconds
+     * @return how many nanoseconds the taker has to wait before using the bytes, 0 if none
+     */
+    synchronized long take(long bytes, long now) {
+        if (rate == 0) {
+            return 0;
+        }
+        refill(now);
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / rate);
+    }
+
+    /**
+     * Takes the given amount only if the bucket holds it, never going into debt.
+     * Used to count requests instead of bytes, a rejected request does not delay the next ones.
+     *
+     * @param amount
+     * @param now    in nanoseconds
+     * @return false if the rate does not allow it now
+     */
+    synchronized boolean tryTake(long amount, long now) {
+        if (rate == 0) {
+            return true;
+        }
+        refill(now);
+        if (tokens < amount) {
+            return false;
+        }
+        tokens -= amount;
+        return true;
+    }
+
+    /**
+     * Takes the given bytes, blocking until the rate allows them.
+     *
+     * @param bytes
+     * @throws InterruptedException
+     */
+    public void acquire(long bytes) throws InterruptedException {
+        long wait = take(bytes, System.nanoTime());
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private void refill(long now) {
+        if (now <= refilledAt) {
+            return;
+        }
+        if (rate > 0) {
+            tokens = Math.min(rate, tokens + (double) (now - refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+        }
+        refilledAt = now;
+    }
+}
@@ -6,6 +6,8 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import org.kie.cekit.cacher.http.Destination;
+import org.kie.cekit.cacher.http.HttpClient;
 import org.kie.cekit.cacher.notification.Notification;
 import org.kie.cekit.cacher.properties.CacherProperties;
 
@@ -16,7 +18,6 @@ import javax.json.JsonObject;
 import javax.json.JsonReader;
 import java.io.StringReader;
 import java.lang.invoke.MethodHandles;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 @ApplicationScoped
@@ -36,6 +37,10 @@ public class PullRequestSender {
     @Inject
     Notification notification;
 
+    @Inject
+    @HttpClient(Destination.GITHUB)
+    OkHttpClient client;
+
     /**
      * Perform a Pull Request using the
      *
@@ -62,11 +67,6 @@ public class PullRequestSender {
         log.info("Trying to perform pull request on " + url + " and with payload: " + requestBodyAsText);
         RequestBody body = RequestBody.create(JSON, requestBodyAsText);
 
-        OkHttpClient client = new OkHttpClient.Builder()
-                .callTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .build();
-
         Request request = new Request.Builder()
                 .addHeader("content-type", "application/json")
                 .addHeader("Authorization", Credentials.basic(cacherProperties.githubUsername(), cacherProperties.githubPassword()))
@@ -1,11 +1,15 @@
 package org.kie.cekit.cacher.builds.nightly;
 
 import io.quarkus.scheduler.Scheduled;
-import okhttp3.ConnectionSpec;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import org.kie.cekit.cacher.builds.github.BuildDateUpdatesInterceptor;
+import org.kie.cekit.cacher.downloads.DownloadPriority;
+import org.kie.cekit.cacher.downloads.DownloadScheduler;
+import org.kie.cekit.cacher.downloads.MirrorSelector;
+import org.kie.cekit.cacher.http.Destination;
+import org.kie.cekit.cacher.http.HttpClient;
 import org.kie.cekit.cacher.objects.PlainArtifact;
 import org.kie.cekit.cacher.properties.CacherProperties;
 import org.kie.cekit.cacher.utils.CacherUtils;
@@ -17,7 +21,6 @@ import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
@@ -36,12 +39,22 @@ public class NightlyBuildsWatcher {
     @Inject
     CacherUtils cacherUtils;
 
+    @Inject
+    @HttpClient(Destination.BUILDS)
+    OkHttpClient client;
+
+    @Inject
+    MirrorSelector mirrorSelector;
+
     @Inject
     CacherProperties cacherProperties;
 
     @Inject
     BuildDateUpdatesInterceptor buildCallback;
 
+    @Inject
+    DownloadScheduler downloadScheduler;
+
     public void verifyNightlyBuild(Optional<String> version, Optional<String> branch, Optional<String> buildDate) {
         tryBuildDate(version, branch, buildDate);
     }
@@ -147,14 +160,14 @@ public class NightlyBuildsWatcher {
             // make sure there is no rhpam already downloaded files
             if (!cacherUtils.fileExistsByNameExcludeTmp(UrlUtils.getFileName(rhpamProp.get(file).toString()))) {
                 // Notify the git consumer that a new file is being downloaded.
-                buildCallback.onNewBuildReceived(new PlainArtifact(UrlUtils.getFileName(rhpamProp.get(file).toString()),
+                PlainArtifact buildInfo = new PlainArtifact(UrlUtils.getFileName(rhpamProp.get(file).toString()),
                         "",
                         buildDate,
                         version,
-                        branch));
-                new Thread(() -> {
-                    log.info(cacherUtils.fetchFile(rhpamProp.get(file).toString()));
-                }).start();
+                        branch);
+                buildCallback.onNewBuildReceived(buildInfo);
+                downloadScheduler.submit(rhpamProp.get(file).toString(), DownloadPriority.NIGHTLY, Optional.of(buildInfo))
+                        .thenAccept(result -> log.info(result.getMessage()));
             }
         });
     }
@@ -172,20 +185,20 @@ public class NightlyBuildsWatcher {
             // make sure there is no rhdm already downloaded files
             if (!cacherUtils.fileExistsByNameExcludeTmp(UrlUtils.getFileName(rhdmProp.get(file).toString()))) {
                 // Notify the git consumer that a new file is being downloaded.
-                buildCallback.onNewBuildReceived(new PlainArtifact(UrlUtils.getFileName(rhdmProp.get(file).toString()),
+                PlainArtifact buildInfo = new PlainArtifact(UrlUtils.getFileName(rhdmProp.get(file).toString()),
                         "",
                         buildDate,
                         version,
-                        branch));
-                new Thread(() -> {
-                    log.info(cacherUtils.fetchFile(rhdmProp.get(file).toString()));
-                }).start();
+                        branch);
+                buildCallback.onNewBuildReceived(buildInfo);
+                downloadScheduler.submit(rhdmProp.get(file).toString(), DownloadPriority.NIGHTLY, Optional.of(buildInfo))
+                        .thenAccept(result -> log.info(result.getMessage()));
             }
         });
     }
 
     /**
-     * fetch the RHDM/RHPAM build properties file.
+     * fetch the RHDM/RHPAM build properties file, trying the mirrors of the url when it has any.
      *
      * @param url
      * @return
@@ -193,27 +206,31 @@ public class NightlyBuildsWatcher {
     private Properties productPropertyFile(String url) {
         log.info("Trying to get the properties file from " + url);
         Properties p = new Properties();
-        OkHttpClient ok = new OkHttpClient.Builder()
-                // no https required.
-                .connectionSpecs(Arrays.asList(ConnectionSpec.CLEARTEXT))
-                .build();
-
-        Request request = new Request.Builder()
-                .url(url)
-                .get()
-                .build();
-
-        try (Response response = ok.newCall(request).execute()) {
-            if (response.code() == 404) {
-                log.info("Nightly build not found... url -> " + url);
+        for (String source : mirrorSelector.sources(url)) {
+            Request request = new Request.Builder()
+                    .url(source)
+                    .get()
+                    .build();
+
+            try (Response response = client.newCall(request).execute()) {
+                if (response.code() == 404) {
+                    log.info("Nightly build not found... url -> " + source);
+                    continue;
+                }
+                if (response.code() >= 400) {
+                    log.warning("Failed to get the properties file from " + source + ", HTTP " + response.code());
+                    mirrorSelector.failed(source);
+                    continue;
+                }
+                try (final InputStream stream = Objects.requireNonNull(response.body()).byteStream()) {
+                    p.load(stream);
+                }
                 return p;
-            }
-            try (final InputStream stream = Objects.requireNonNull(response.body()).byteStream()) {
-                p.load(stream);
-            }
 
-        } catch (final Exception e) {
-            e.printStackTrace();
+            } catch (final Exception e) {
+                e.printStackTrace();
+                mirrorSelector.failed(source);
+            }
         }
 
         return p;
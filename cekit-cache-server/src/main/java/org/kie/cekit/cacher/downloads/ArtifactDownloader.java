@@ -0,0 +1,454 @@
+package org.kie.cekit.cacher.downloads;
+
+import okhttp3.OkHttpClient;
+import org.kie.cekit.cacher.bandwidth.BandwidthShaper;
+import org.kie.cekit.cacher.http.Destination;
+import org.kie.cekit.cacher.http.HttpClient;
+import org.kie.cekit.cacher.objects.PlainArtifact;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.ArtifactDigester;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Transfers an artifact into its tmp file, continuing a previous partial transfer when possible.
+ * <p>
+ * A {@link ResumeRecord} is written before the transfer when the upstream accepts byte ranges and sends a validator
+ * (ETag or Last-Modified). If the transfer is interrupted the partial file is kept and the next attempt asks only
+ * for the missing bytes, using If-Range so a changed upstream file is sent whole again. Upstreams that do not
+ * support ranges are always fetched from scratch.
+ * <p>
+ * Large artifacts from upstreams that accept ranges are split in {@link Segments} fetched in parallel, each one over
+ * its own connection. Segmented downloads are not resumed, a failure restarts them.
+ */
+@ApplicationScoped
+public class ArtifactDownloader {
+
+    static final String RESUME_SUFFIX = ".resume";
+    private static final int SEGMENT_BUFFER_SIZE = 256 * 1024;
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+    private final Jsonb jsonb = JsonbBuilder.create();
+    private final AtomicInteger threads = new AtomicInteger();
+    // segments of all downloads, the parallelism of each download is bounded by its own workers count
+    private final ExecutorService segmentWorkers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "cacher-segment-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    DownloadTracker downloadTracker;
+
+    @Inject
+    @HttpClient(Destination.ARTIFACTS)
+    OkHttpClient httpClient;
+
+    @Inject
+    MirrorSelector mirrorSelector;
+
+    @Inject
+    BandwidthShaper bandwidthShaper;
+
+    @Inject
+    UpstreamHealth upstreamHealth;
+
+    @PreDestroy
+    void shutdown() {
+        segmentWorkers.shutdownNow();
+    }
+
+    /**
+     * Downloads the url into the target file, digesting every byte of the complete file.
+     * When the url has mirrors they are tried from the fastest one, failing over to the next one if a transfer fails.
+     * Sources whose host has its circuit open are skipped, the outcome of each transfer counts on the circuit of the
+     * host it was fetched from, see {@link UpstreamHealth}.
+     * On failure the target is kept only if it can be resumed, see {@link #abort(Path)}.
+     *
+     * @param url
+     * @param target    tmp file
+     * @param digester
+     * @param buildInfo stored on the resume record so a resumed nightly artifact keeps it
+     * @return the artifact length
+     * @throws IOException
+     */
+    public long download(String url, Path target, ArtifactDigester digester, Optional<PlainArtifact> buildInfo) throws IOException {
+        IOException failure = null;
+        long wait = Long.MAX_VALUE;
+        for (String source : mirrorSelector.sources(url)) {
+            String host = new URL(source).getHost();
+            String upstream = DownloadTask.hostOf(source);
+            long closed = upstreamHealth.acquire(upstream);
+            if (closed > 0) {
+                log.fine("Host " + upstream + " unavailable, circuit open, skipping it for the download of " + url);
+                wait = Math.min(wait, closed);
+                continue;
+            }
+            if (null != failure) {
+                log.info("Trying mirror " + source + " for " + url);
+                digester.reset();
+            }
+            long start = System.currentTimeMillis();
+            try {
+                long length = download(url, source, target, digester, buildInfo,
+                        new Segments(cacherProperties.downloadSegments(host), cacherProperties.downloadSegmentSize(host)));
+                upstreamHealth.record(upstream, false, null);
+                mirrorSelector.transferred(source, length, System.currentTimeMillis() - start);
+                return length;
+            } catch (IOException e) {
+                // only transient failures count against the host, a missing file still means the host is up
+                upstreamHealth.record(upstream, UpstreamException.isTransient(e), e.getMessage());
+                mirrorSelector.failed(source);
+                log.warning("Download of " + url + " from " + source + " failed: " + e.getMessage());
+                failure = e;
+            } catch (RuntimeException e) {
+                upstreamHealth.release(upstream);
+                throw e;
+            }
+        }
+        if (null != failure) {
+            throw failure;
+        }
+        throw new UpstreamUnavailableException("Upstream of " + url + " unavailable, circuit open.", wait);
+    }
+
+    long download(String url, Path target, ArtifactDigester digester, Optional<PlainArtifact> buildInfo, Segments segments) throws IOException {
+        return download(url, url, target, digester, buildInfo, segments);
+    }
+
+    /**
+     * @param url    artifact url, the progress and the resume record refer to it
+     * @param source url the bytes are fetched from, the url itself or one of its mirrors
+     */
+    long download(String url, String source, Path target, ArtifactDigester digester, Optional<PlainArtifact> buildInfo, Segments segments) throws IOException {
+        Optional<ResumeRecord> record = readRecord(target).filter(r -> url.equals(r.getUrl()));
+        long offset = record.isPresent() && Files.exists(target) ? Files.size(target) : 0;
+
+        if (offset > 0 && offset == record.get().getExpectedLength()) {
+            if (unchanged(source, offset, record.get().validator())) {
+                log.info("Tmp file " + target.getFileName() + " already complete, verifying it.");
+                digester.digest(target);
+                deleteRecord(target);
+                return offset;
+            }
+            log.info("Upstream of " + target.getFileName() + " changed since it was downloaded, downloading it again.");
+            discard(target);
+            offset = 0;
+        }
+
+        Upstream upstream;
+        try {
+            upstream = Upstream.open(httpClient, source, offset, -1, offset > 0 ? record.get().validator() : null);
+        } catch (UpstreamException e) {
+            if (offset == 0 || UpstreamException.isTransient(e)) {
+                throw e;
+            }
+            // retrying the same range would fail the same way
+            log.info("Upstream refused to resume " + target.getFileName() + ": " + e.getMessage());
+            discard(target);
+            if (e.getCode() != 416 && e.getCode() != 412) {
+                throw e;
+            }
+            offset = 0;
+            upstream = Upstream.open(httpClient, source, 0, -1, null);
+        }
+        boolean resumed = offset > 0 && upstream.isPartial();
+
+        if (resumed) {
+            log.info("Resuming " + target.getFileName() + " from byte " + offset + ".");
+            // the digests state can not be stored, so the partial file is digested again before continuing.
+            digester.digest(target);
+        } else {
+            if (offset > 0) {
+                log.info("Upstream did not accept the range request, downloading " + target.getFileName() + " again.");
+            }
+            if (!upstream.isComplete()) {
+                // a range other than the requested one, its bytes can not be used
+                upstream.close();
+                upstream = Upstream.open(httpClient, source, 0, -1, null);
+            }
+            offset = 0;
+            deleteRecord(target);
+            long length = upstream.contentLength();
+            if (upstream.acceptsRanges() && segments.apply(length)) {
+                if (downloadSegments(url, source, upstream, target, length, segments)) {
+                    // segments complete out of order, the file is digested once all of them are written.
+                    digester.digest(target);
+                    return length;
+                }
+                log.info("Upstream did not accept the range requests, downloading " + target.getFileName() + " with a single connection.");
+                upstream = Upstream.open(httpClient, source, 0, -1, null);
+            }
+            writeRecord(target, upstream, url, buildInfo);
+        }
+
+        try (Upstream body = upstream;
+             ReadableByteChannel bytes = Channels.newChannel(body.body());
+             FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (!resumed) {
+                channel.truncate(0);
+            }
+            channel.position(offset);
+            long total = body.contentLength();
+            downloadTracker.transferStarted(url, resumed && total >= 0 ? offset + total : total, offset);
+            long length = offset + digester.transfer(bytes, channel, progress(url));
+            deleteRecord(target);
+            return length;
+        }
+    }
+
+    /**
+     * Cleans up after a failed download, the tmp file is kept if it can be resumed.
+     *
+     * @param target tmp file
+     */
+    public void abort(Path target) {
+        if (Files.exists(recordOf(target))) {
+            log.info("Keeping " + target.getFileName() + " to resume it later.");
+            return;
+        }
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * @param target tmp file
+     * @return true if the given tmp file belongs to an interrupted download that can be resumed
+     */
+    public boolean isResumable(Path target) {
+        return Files.exists(recordOf(target));
+    }
+
+    /**
+     * @param tmpDir
+     * @return the interrupted downloads found on the tmp dir
+     */
+    public List<ResumeRecord> interrupted(Path tmpDir) {
+        List<ResumeRecord> records = new ArrayList<>();
+        try (Stream<Path> files = Files.list(tmpDir)) {
+            files.filter(file -> file.getFileName().toString().endsWith(RESUME_SUFFIX))
+                    .forEach(file -> {
+                        String name = file.getFileName().toString();
+                        readRecord(file.resolveSibling(name.substring(0, name.length() - RESUME_SUFFIX.length())))
+                                .ifPresent(records::add);
+                    });
+        } catch (IOException e) {
+            log.warning("Failed to list interrupted downloads: " + e.getMessage());
+        }
+        return records;
+    }
+
+    /**
+     * @param file
+     * @return true if the given file is a resume record and not a partial artifact
+     */
+    public static boolean isResumeRecord(Path file) {
+        return file.getFileName().toString().endsWith(RESUME_SUFFIX);
+    }
+
+    /**
+     * Fetches the artifact in ranges written in parallel into the preallocated target. The first range is read
+     * from the already open connection, the others use their own connection.
+     *
+     * @return false if the upstream answered a range request with the whole file
+     */
+    private boolean downloadSegments(String url, String source, Upstream first, Path target, long length, Segments segments) throws IOException {
+        int count = segments.count(length);
+        int parallelism = Math.min(segments.parallelism, count);
+        String validator = first.validator();
+        log.info("Downloading " + target.getFileName() + " in " + count + " segments, " + parallelism + " at once.");
+
+        try (RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw")) {
+            file.setLength(length);
+            downloadTracker.transferStarted(url, length, 0);
+            LongConsumer progress = progress(url);
+            FileChannel channel = file.getChannel();
+            AtomicInteger next = new AtomicInteger(1);
+            AtomicBoolean rangesAccepted = new AtomicBoolean(true);
+
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < parallelism; i++) {
+                boolean firstWorker = i == 0;
+                workers.add(segmentWorkers.submit(() -> {
+                    if (firstWorker) {
+                        write(first, channel, 0, Math.min(segments.size, length), progress);
+                    }
+                    int segment;
+                    while (rangesAccepted.get() && (segment = next.getAndIncrement()) < count) {
+                        long start = segment * segments.size;
+                        long end = Math.min(start + segments.size, length);
+                        Upstream upstream = Upstream.open(httpClient, source, start, end - 1, validator);
+                        if (!upstream.isPartial()) {
+                            rangesAccepted.set(false);
+                            upstream.close();
+                            return null;
+                        }
+                        write(upstream, channel, start, end, progress);
+                    }
+                    return null;
+                }));
+            }
+            try {
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+            } catch (ExecutionException e) {
+                rangesAccepted.set(false);
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                rangesAccepted.set(false);
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while downloading " + target.getFileName());
+            }
+            return rangesAccepted.get();
+        } finally {
+            first.close();
+        }
+    }
+
+    /**
+     * Writes the connection body into the channel from start to end, exclusive.
+     */
+    private void write(Upstream upstream, FileChannel channel, long start, long end, LongConsumer progress) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SEGMENT_BUFFER_SIZE);
+        long position = start;
+        try (ReadableByteChannel source = Channels.newChannel(upstream.body())) {
+            while (position < end) {
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                if (source.read(buffer) == -1) {
+                    throw new IOException("Segment ending at " + end + " truncated at " + position);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    int written = channel.write(buffer, position);
+                    position += written;
+                    progress.accept(written);
+                }
+                buffer.clear();
+            }
+        } finally {
+            upstream.close();
+        }
+    }
+
+    /**
+     * @return reports the bytes received to the tracker and holds the download under its bandwidth limits
+     */
+    LongConsumer progress(String url) {
+        DownloadPriority priority = downloadTracker.priorityOf(url).orElse(null);
+        return bytes -> {
+            downloadTracker.received(url, bytes);
+            bandwidthShaper.downloaded(priority, bytes);
+        };
+    }
+
+    private void writeRecord(Path target, Upstream upstream, String url, Optional<PlainArtifact> buildInfo) {
+        if (!upstream.acceptsRanges() || upstream.contentLength() <= 0) {
+            return;
+        }
+        ResumeRecord record = new ResumeRecord(url,
+                upstream.contentLength(),
+                upstream.header("ETag"),
+                upstream.header("Last-Modified"),
+                buildInfo.orElse(null));
+        if (null == record.validator()) {
+            return;
+        }
+        Path file = recordOf(target);
+        Path tmp = file.resolveSibling(file.getFileName() + ".new");
+        try {
+            Files.write(tmp, jsonb.toJson(record).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warning("Failed to write resume record for " + target.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    private Optional<ResumeRecord> readRecord(Path target) {
+        Path file = recordOf(target);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(jsonb.fromJson(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), ResumeRecord.class));
+        } catch (final Exception e) {
+            log.warning("Ignoring unreadable resume record " + file + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Asks the upstream for the last byte of a downloaded file, on the condition of the stored validator
+     *
+     * @param length length of the downloaded file
+     * @return true if the upstream still has the same file, false if it changed or it can not be told
+     */
+    private boolean unchanged(String source, long length, String validator) throws IOException {
+        if (null == validator) {
+            return false;
+        }
+        try (Upstream check = Upstream.open(httpClient, source, length - 1, length - 1, validator)) {
+            return check.isPartial();
+        } catch (UpstreamException e) {
+            if (UpstreamException.isTransient(e)) {
+                throw e;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Removes a partial file that can not be resumed and its record
+     */
+    private void discard(Path target) throws IOException {
+        deleteRecord(target);
+        Files.deleteIfExists(target);
+    }
+
+    private void deleteRecord(Path target) {
+        try {
+            Files.deleteIfExists(recordOf(target));
+        } catch (IOException e) {
+            log.warning("Failed to delete resume record of " + target.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    private static Path recordOf(Path target) {
+        return target.resolveSibling(target.getFileName() + RESUME_SUFFIX);
+    }
+}
@@ -0,0 +1,117 @@
+package org.kie.cekit.cacher.downloads;
+
+import org.kie.cekit.cacher.objects.UpstreamHostStatus;
+
+/**
+ * Circuit breaker of a single upstream host. After too many consecutive transient failures the circuit opens and no
+ * download is tried against the host for a while, then a single trial download decides if it closes or opens again.
+ * Not thread safe, {@link UpstreamHealth} serializes the access to it.
+ */
+class CircuitBreaker {
+
+    static final String CLOSED = "CLOSED";
+    static final String OPEN = "OPEN";
+    static final String HALF_OPEN = "HALF_OPEN";
+
+    private final String host;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private String state = CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private boolean trialRunning;
+    // counters since startup
+    private long attempts;
+    private long retries;
+    private long successes;
+    private long failures;
+    private long rejected;
+    private long opened;
+    private String lastError;
+
+    CircuitBreaker(String host, int failureThreshold, long openMillis) {
+        this.host = host;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @param now
+     * @return 0 if a download can be tried now, otherwise how many milliseconds to wait before trying again
+     */
+    long acquire(long now) {
+        if (OPEN.equals(state) && now >= openUntil) {
+            state = HALF_OPEN;
+        }
+        if (CLOSED.equals(state) || (HALF_OPEN.equals(state) && !trialRunning)) {
+            trialRunning = HALF_OPEN.equals(state);
+            attempts++;
+            return 0;
+        }
+        rejected++;
+        return OPEN.equals(state) ? openUntil - now : openMillis;
+    }
+
+    /**
+     * @param now
+     * @return 0 if {@link #acquire(long)} would let a download through now, otherwise how many milliseconds to wait
+     */
+    long waitTime(long now) {
+        String current = state(now);
+        if (CLOSED.equals(current) || (HALF_OPEN.equals(current) && !trialRunning)) {
+            return 0;
+        }
+        return OPEN.equals(current) ? openUntil - now : openMillis;
+    }
+
+    void success() {
+        successes++;
+        consecutiveFailures = 0;
+        trialRunning = false;
+        state = CLOSED;
+    }
+
+    void failure(String error, long now) {
+        failures++;
+        consecutiveFailures++;
+        lastError = error;
+        if (HALF_OPEN.equals(state) || consecutiveFailures >= failureThreshold) {
+            if (!OPEN.equals(state)) {
+                opened++;
+            }
+            state = OPEN;
+            openUntil = now + openMillis;
+        }
+        trialRunning = false;
+    }
+
+    /**
+     * Gives back a trial that ended without reaching the host
+     */
+    void release() {
+        trialRunning = false;
+    }
+
+    void retried() {
+        retries++;
+    }
+
+    String state(long now) {
+        return OPEN.equals(state) && now >= openUntil ? HALF_OPEN : state;
+    }
+
+    UpstreamHostStatus toStatus(long now) {
+        UpstreamHostStatus status = new UpstreamHostStatus(host, state(now));
+        status.setConsecutiveFailures(consecutiveFailures);
+        status.setOpenUntil(OPEN.equals(state) && now < openUntil ? openUntil : 0);
+        status.setAttempts(attempts);
+        status.setRetries(retries);
+        status.setSuccesses(successes);
+        status.setFailures(failures);
+        status.setRejected(rejected);
+        status.setOpened(opened);
+        status.setLastError(lastError);
+        return status;
+    }
+}
@@ -0,0 +1,13 @@
+package org.kie.cekit.cacher.downloads;
+
+/**
+ * Priority classes of the queued downloads, declared from the most to the least urgent.
+ */
+public enum DownloadPriority {
+    // requested by an user through the rest api or web ui
+    MANUAL,
+    // nightly builds artifacts found by the watcher
+    NIGHTLY,
+    // artifacts listed on the pre load file
+    PRELOAD
+}
@@ -0,0 +1,106 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Decides which queued download runs next: the most urgent one whose host is below its limit, as long as the
+ * global limit is not reached. Not thread safe, the {@link DownloadScheduler} serializes the access to it.
+ */
+class DownloadQueue {
+
+    private final int maxConcurrent;
+    private final int defaultMaxPerHost;
+    private final Map<String, Integer> maxPerHost;
+
+    private final TreeSet<DownloadTask> pending = new TreeSet<>();
+    private final List<DownloadTask> running = new ArrayList<>();
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+
+    DownloadQueue(int maxConcurrent, int defaultMaxPerHost, Map<String, Integer> maxPerHost) {
+        this.maxConcurrent = maxConcurrent;
+        this.defaultMaxPerHost = defaultMaxPerHost;
+        this.maxPerHost = maxPerHost;
+    }
+
+    void offer(DownloadTask task) {
+        pending.add(task);
+    }
+
+    /**
+     * Raises the priority of a task that did not start yet, a task never loses priority.
+     *
+     * @param task
+     * @param priority
+     */
+    void promote(DownloadTask task, DownloadPriority priority) {
+        if (priority.compareTo(task.getPriority()) < 0 && pending.remove(task)) {
+            task.setPriority(priority);
+            pending.add(task);
+        }
+    }
+
+    /**
+     * Takes the next task allowed to run, it is accounted as running until {@link #done(DownloadTask)}.
+     *
+     * @return the next task, null if none can start now
+     */
+    DownloadTask poll() {
+        if (running.size() >= maxConcurrent) {
+            return null;
+        }
+        Iterator<DownloadTask> tasks = pending.iterator();
+        while (tasks.hasNext()) {
+            DownloadTask task = tasks.next();
+            if (hostAllows(task)) {
+                tasks.remove();
+                run(task);
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Accounts a task that is not queued as running right away, ahead of the pending ones, if the limits allow it.
+     * It is accounted as running until {@link #done(DownloadTask)}.
+     *
+     * @return false if the global limit or the limit of the task host is reached
+     */
+    boolean start(DownloadTask task) {
+        if (running.size() >= maxConcurrent || !hostAllows(task)) {
+            return false;
+        }
+        run(task);
+        return true;
+    }
+
+    void done(DownloadTask task) {
+        if (running.remove(task)) {
+            runningPerHost.computeIfPresent(task.getHost(), (host, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private boolean hostAllows(DownloadTask task) {
+        return runningPerHost.getOrDefault(task.getHost(), 0) < maxPerHost.getOrDefault(task.getHost(), defaultMaxPerHost);
+    }
+
+    private void run(DownloadTask task) {
+        running.add(task);
+        runningPerHost.merge(task.getHost(), 1, Integer::sum);
+        task.started();
+    }
+
+    /**
+     * @return running tasks followed by the pending ones in the order they will start
+     */
+    List<DownloadTask> tasks() {
+        List<DownloadTask> tasks = new ArrayList<>(running);
+        tasks.addAll(pending);
+        return tasks;
+    }
+}
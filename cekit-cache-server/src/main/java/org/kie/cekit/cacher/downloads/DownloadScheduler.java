@@ -0,0 +1,284 @@
+package org.kie.cekit.cacher.downloads;
+
+import org.kie.cekit.cacher.objects.DownloadStatus;
+import org.kie.cekit.cacher.objects.FetchResult;
+import org.kie.cekit.cacher.objects.PlainArtifact;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.CacherUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Runs every artifact download, bounding how many run at once globally and per host.
+ * Queued downloads start by priority, manual requests first, then nightly builds and the pre load file last.
+ * <p>
+ * A url is downloaded once at a time, callers asking for a url already queued or running wait for that download.
+ * <p>
+ * Downloads failing with a transient error are queued again after an exponential backoff, and downloads whose hosts,
+ * the host of the url and of its mirrors, all have their circuit open, see {@link UpstreamHealth}, wait for one of
+ * them without using a download slot.
+ */
+@ApplicationScoped
+public class DownloadScheduler {
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final AtomicLong sequence = new AtomicLong();
+    private DownloadQueue queue;
+    // url -> queued or running download
+    private final Map<String, DownloadTask> inFlight = new HashMap<>();
+    // downloads waiting to be retried
+    private final List<DownloadTask> waiting = new ArrayList<>();
+    private ExecutorService workers;
+    private ScheduledExecutorService retryTimer;
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    ArtifactDownloader artifactDownloader;
+
+    @Inject
+    DownloadTracker downloadTracker;
+
+    @Inject
+    UpstreamHealth upstreamHealth;
+
+    @Inject
+    MirrorSelector mirrorSelector;
+
+    // looked up lazily, CacherUtils also queues the pre load downloads here
+    @Inject
+    Instance<CacherUtils> cacherUtils;
+
+    @PostConstruct
+    void init() {
+        int maxConcurrent = cacherProperties.downloadMaxConcurrent();
+        queue = new DownloadQueue(maxConcurrent, cacherProperties.downloadMaxPerHost(), cacherProperties.downloadMaxPerHostOverrides());
+        AtomicInteger threads = new AtomicInteger();
+        // the queue never hands out more than maxConcurrent tasks, so the pool never queues on its own.
+        workers = Executors.newFixedThreadPool(maxConcurrent, runnable -> {
+            Thread thread = new Thread(runnable, "cacher-download-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        retryTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cacher-download-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Downloads limited to " + maxConcurrent + " at once, " + cacherProperties.downloadMaxPerHost() + " per host.");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+        retryTimer.shutdownNow();
+    }
+
+    /**
+     * Queues the download of the given url, or joins the download of the same url already queued or running.
+     * Joining a queued download with a more urgent priority promotes it.
+     *
+     * @param url
+     * @param priority
+     * @param buildInfo nightly build information to be stored with the artifact metadata
+     * @return completed with the result of the fetch once the download ends
+     */
+    public CompletableFuture<FetchResult> submit(String url, DownloadPriority priority, Optional<PlainArtifact> buildInfo) {
+        DownloadTask task;
+        synchronized (this) {
+            DownloadTask current = inFlight.get(url);
+            if (null != current) {
+                log.fine("Download of " + url + " already in flight, waiting for it.");
+                queue.promote(current, priority);
+                return current.getResult();
+            }
+            task = new DownloadTask(sequence.incrementAndGet(), url, priority, buildInfo);
+            inFlight.put(url, task);
+            queue.offer(task);
+        }
+        downloadTracker.queued(task);
+        log.fine("Download of " + url + " queued with " + priority + " priority.");
+        dispatch();
+        return task.getResult();
+    }
+
+    /**
+     * @param url
+     * @return completed with the result of the fetch of the url queued or running, empty if there is none
+     */
+    public synchronized Optional<CompletableFuture<FetchResult>> inFlight(String url) {
+        return Optional.ofNullable(inFlight.get(url)).map(DownloadTask::getResult);
+    }
+
+    /**
+     * Starts right away a download the caller runs itself, a read through. It takes a download slot of the host of
+     * the url and is tracked like the queued downloads, callers submitting the same url wait for it.
+     * It must be ended with {@link #finished(DownloadTask, FetchResult)}.
+     *
+     * @param url
+     * @return the started download, empty if the url is already queued or running
+     * @throws UpstreamUnavailableException if the global limit or the limit of the host is reached
+     */
+    public Optional<DownloadTask> start(String url) throws UpstreamUnavailableException {
+        DownloadTask task;
+        synchronized (this) {
+            if (inFlight.containsKey(url)) {
+                return Optional.empty();
+            }
+            task = new DownloadTask(sequence.incrementAndGet(), url, DownloadPriority.MANUAL, Optional.empty());
+            if (!queue.start(task)) {
+                throw new UpstreamUnavailableException("No download slot available for " + task.getHost() + ", try again later.", 0);
+            }
+            inFlight.put(url, task);
+        }
+        task.attempted();
+        downloadTracker.started(task);
+        return Optional.of(task);
+    }
+
+    /**
+     * Ends a download started with {@link #start(String)}, its slot goes to the next queued download.
+     *
+     * @param task
+     * @param result
+     */
+    public void finished(DownloadTask task, FetchResult result) {
+        downloadTracker.finished(task, result);
+        synchronized (this) {
+            queue.done(task);
+            inFlight.remove(task.getUrl(), task);
+        }
+        task.getResult().complete(result);
+        dispatch();
+    }
+
+    /**
+     * Queues again the downloads interrupted by a restart, they continue from where they stopped.
+     */
+    public void resumeInterrupted() {
+        for (ResumeRecord record : artifactDownloader.interrupted(Paths.get(cacherProperties.getArtifactsTmpDir()))) {
+            Optional<PlainArtifact> buildInfo = Optional.ofNullable(record.getBuildInfo());
+            log.info("Resuming interrupted download of " + record.getUrl());
+            submit(record.getUrl(), buildInfo.isPresent() ? DownloadPriority.NIGHTLY : DownloadPriority.PRELOAD, buildInfo)
+                    .thenAccept(result -> log.info(result.getMessage()));
+        }
+    }
+
+    /**
+     * @return running downloads followed by the queued ones, in the order they will start, then the ones waiting
+     * to be retried
+     */
+    public synchronized List<DownloadStatus> queue() {
+        List<DownloadTask> tasks = queue.tasks();
+        tasks.addAll(waiting);
+        return tasks.stream().map(DownloadTask::toStatus).collect(Collectors.toList());
+    }
+
+    private void dispatch() {
+        DownloadTask task;
+        while (null != (task = next())) {
+            DownloadTask toRun = task;
+            workers.execute(() -> run(toRun));
+        }
+    }
+
+    private synchronized DownloadTask next() {
+        return queue.poll();
+    }
+
+    private void run(DownloadTask task) {
+        downloadTracker.started(task);
+        boolean retrying = false;
+        try {
+            List<String> hosts = mirrorSelector.hosts(task.getUrl());
+            long wait = upstreamHealth.waitFor(hosts);
+            if (wait > 0) {
+                // the hosts are failing, wait for a circuit to let a trial through without using an attempt
+                log.fine("Hosts " + hosts + " unavailable, postponing the download of " + task.getUrl());
+                retryLater(task, "Hosts " + String.join(", ", hosts) + " unavailable, circuit open.", wait);
+                retrying = true;
+                return;
+            }
+            task.attempted();
+            FetchResult result = attempt(task);
+            retrying = retry(task, result);
+            if (!retrying) {
+                downloadTracker.finished(task, result);
+                task.getResult().complete(result);
+            }
+        } catch (RuntimeException e) {
+            log.warning("Download of " + task.getUrl() + " failed: " + e.getMessage());
+            downloadTracker.failed(task, e.getMessage());
+            task.getResult().completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                queue.done(task);
+                if (!retrying) {
+                    inFlight.remove(task.getUrl(), task);
+                }
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * Fetches the url, the downloader records the outcome on the circuit of the host it was fetched from.
+     */
+    private FetchResult attempt(DownloadTask task) {
+        return cacherUtils.get().fetch(task.getUrl(), task.getBuildInfo());
+    }
+
+    /**
+     * Schedules another attempt of a download that failed with a transient error, unless it has no attempts left.
+     *
+     * @return true if the download will be tried again
+     */
+    private boolean retry(DownloadTask task, FetchResult result) {
+        if (FetchResult.Status.FAILED != result.getStatus() || !result.isRetryable()
+                || task.getAttempts() >= cacherProperties.downloadRetryAttempts()) {
+            return false;
+        }
+        long delay = upstreamHealth.retryDelay(task.getAttempts());
+        log.info("Download of " + task.getUrl() + " failed, attempt " + task.getAttempts() + " of "
+                + cacherProperties.downloadRetryAttempts() + ", retrying in " + delay / 1000 + "s: " + result.getMessage());
+        upstreamHealth.retried(task.getHost());
+        retryLater(task, result.getMessage(), delay);
+        return true;
+    }
+
+    private void retryLater(DownloadTask task, String message, long delay) {
+        synchronized (this) {
+            waiting.add(task);
+        }
+        downloadTracker.retrying(task, message, System.currentTimeMillis() + delay);
+        retryTimer.schedule(() -> {
+            synchronized (this) {
+                waiting.remove(task);
+                queue.offer(task);
+            }
+            dispatch();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+}
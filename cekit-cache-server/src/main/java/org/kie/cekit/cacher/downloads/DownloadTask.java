@@ -0,0 +1,192 @@
+package org.kie.cekit.cacher.downloads;
+
+import org.kie.cekit.cacher.objects.DownloadStatus;
+import org.kie.cekit.cacher.objects.FetchResult;
+import org.kie.cekit.cacher.objects.PlainArtifact;
+import org.kie.cekit.cacher.utils.UrlUtils;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A download waiting on the {@link DownloadQueue} or being executed.
+ */
+public class DownloadTask implements Comparable<DownloadTask> {
+
+    private final long sequence;
+    private final String url;
+    private final String host;
+    private DownloadPriority priority;
+    private final Optional<PlainArtifact> buildInfo;
+    private final CompletableFuture<FetchResult> result = new CompletableFuture<>();
+    private final long enqueuedAt = System.currentTimeMillis();
+    private volatile long startedAt;
+    // progress, updated by the download thread and read by the tracker
+    private final AtomicLong received = new AtomicLong();
+    private volatile long resumedFrom;
+    private volatile long total = -1;
+    private volatile long finishedAt;
+    private volatile String state = DownloadStatus.QUEUED;
+    private volatile String checksum;
+    private volatile String error;
+    private volatile int attempts;
+    private volatile long retryAt;
+
+    DownloadTask(long sequence, String url, DownloadPriority priority, Optional<PlainArtifact> buildInfo) {
+        this.sequence = sequence;
+        this.url = url;
+        this.host = hostOf(url);
+        this.priority = priority;
+        this.buildInfo = buildInfo;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public DownloadPriority getPriority() {
+        return priority;
+    }
+
+    public Optional<PlainArtifact> getBuildInfo() {
+        return buildInfo;
+    }
+
+    /**
+     * @return completed with the fetch result once the download ends
+     */
+    public CompletableFuture<FetchResult> getResult() {
+        return result;
+    }
+
+    void setPriority(DownloadPriority priority) {
+        this.priority = priority;
+    }
+
+    void started() {
+        startedAt = System.currentTimeMillis();
+        state = DownloadStatus.RUNNING;
+        retryAt = 0;
+    }
+
+    /**
+     * Called when the download actually reaches out to the upstream
+     */
+    void attempted() {
+        attempts++;
+    }
+
+    /**
+     * @return attempts made so far
+     */
+    int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Back to the queued state after a transient failure, the download is tried again at the given time.
+     */
+    void retrying(String message, long retryAt) {
+        state = DownloadStatus.QUEUED;
+        error = message;
+        this.retryAt = retryAt;
+        startedAt = 0;
+        resumedFrom = 0;
+        total = -1;
+        received.set(0);
+    }
+
+    /**
+     * @param total  artifact length, -1 if unknown
+     * @param offset bytes already on disk when the transfer starts
+     */
+    void transferStarted(long total, long offset) {
+        this.total = total;
+        this.resumedFrom = offset;
+        this.received.set(offset);
+    }
+
+    void received(long bytes) {
+        received.addAndGet(bytes);
+    }
+
+    void finished(FetchResult result) {
+        checksum = result.getChecksum();
+        switch (result.getStatus()) {
+            case FAILED:
+                failed(result.getMessage());
+                break;
+            case IN_PROGRESS:
+                state = DownloadStatus.SKIPPED;
+                error = result.getMessage();
+                break;
+            default:
+                state = DownloadStatus.COMPLETED;
+        }
+        finishedAt = System.currentTimeMillis();
+    }
+
+    void failed(String message) {
+        state = DownloadStatus.FAILED;
+        error = message;
+        finishedAt = System.currentTimeMillis();
+    }
+
+    long getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * @return a snapshot of this task, suitable to be exposed
+     */
+    public DownloadStatus toStatus() {
+        DownloadStatus status = new DownloadStatus(UrlUtils.getFileName(url),
+                url,
+                host,
+                priority.name(),
+                state,
+                enqueuedAt,
+                startedAt);
+        long bytes = received.get();
+        long end = finishedAt > 0 ? finishedAt : System.currentTimeMillis();
+        long elapsed = startedAt > 0 ? end - startedAt : 0;
+        long rate = elapsed > 0 ? (bytes - resumedFrom) * 1000 / elapsed : 0;
+        status.setBytesReceived(bytes);
+        status.setTotalBytes(total);
+        status.setBytesPerSecond(rate);
+        status.setEtaSeconds(DownloadStatus.RUNNING.equals(state) && total > 0 && rate > 0 ? (total - bytes) / rate : -1);
+        status.setFinishedAt(finishedAt);
+        status.setChecksum(checksum);
+        status.setError(error);
+        status.setAttempts(attempts);
+        status.setRetryAt(retryAt);
+        return status;
+    }
+
+    /**
+     * Most urgent priority first, then first come first served.
+     */
+    @Override
+    public int compareTo(DownloadTask other) {
+        int comparison = priority.compareTo(other.priority);
+        return comparison != 0 ? comparison : Long.compare(sequence, other.sequence);
+    }
+
+    /**
+     * @return lower case host of the url, empty if it has none
+     */
+    static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return null == host ? "" : host.toLowerCase();
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.kie.cekit.cacher.downloads;
+
+import org.kie.cekit.cacher.objects.DownloadStatus;
+import org.kie.cekit.cacher.objects.FetchResult;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Follows the progress of the downloads and notifies the subscribers of every change.
+ * Progress notifications of a download are sent at most once per second, state changes are always sent.
+ * Finished downloads are kept for a while so clients waiting on them can see how they ended.
+ */
+@ApplicationScoped
+public class DownloadTracker {
+
+    private static final long PROGRESS_INTERVAL = 1000;
+    private static final long FINISHED_RETENTION = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_FINISHED = 100;
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    // url -> running download
+    private final Map<String, DownloadTask> running = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastPublished = new ConcurrentHashMap<>();
+    // most recent first
+    private final Deque<DownloadTask> finished = new ArrayDeque<>();
+    private final List<Predicate<DownloadStatus>> subscribers = new CopyOnWriteArrayList<>();
+
+    void queued(DownloadTask task) {
+        publish(task);
+    }
+
+    void started(DownloadTask task) {
+        running.put(task.getUrl(), task);
+        publish(task);
+    }
+
+    void finished(DownloadTask task, FetchResult result) {
+        task.finished(result);
+        done(task);
+    }
+
+    void failed(DownloadTask task, String message) {
+        task.failed(message);
+        done(task);
+    }
+
+    void retrying(DownloadTask task, String message, long retryAt) {
+        running.remove(task.getUrl(), task);
+        lastPublished.remove(task.getUrl());
+        task.retrying(message, retryAt);
+        publish(task);
+    }
+
+    /**
+     * Called once the length of the artifact being downloaded is known
+     *
+     * @param url
+     * @param total  -1 if unknown
+     * @param offset bytes already downloaded before a resume
+     */
+    public void transferStarted(String url, long total, long offset) {
+        DownloadTask task = running.get(url);
+        if (null != task) {
+            task.transferStarted(total, offset);
+            publish(task);
+        }
+    }
+
+    /**
+     * @param url
+     * @param bytes received since the last call
+     */
+    public void received(String url, long bytes) {
+        DownloadTask task = running.get(url);
+        if (null != task) {
+            task.received(bytes);
+            long now = System.currentTimeMillis();
+            Long last = lastPublished.get(url);
+            if (null == last || now - last >= PROGRESS_INTERVAL) {
+                lastPublished.put(url, now);
+                publish(task);
+            }
+        }
+    }
+
+    /**
+     * @param url
+     * @return the priority of the running download of the url
+     */
+    public Optional<DownloadPriority> priorityOf(String url) {
+        return Optional.ofNullable(running.get(url)).map(DownloadTask::getPriority);
+    }
+
+    /**
+     * @return recently finished downloads, most recent first
+     */
+    public synchronized List<DownloadStatus> finished() {
+        prune();
+        return finished.stream().map(DownloadTask::toStatus).collect(Collectors.toList());
+    }
+
+    /**
+     * Registers a subscriber notified of every download change, it is removed once it returns false.
+     *
+     * @param subscriber
+     */
+    public void subscribe(Predicate<DownloadStatus> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    private void done(DownloadTask task) {
+        running.remove(task.getUrl(), task);
+        lastPublished.remove(task.getUrl());
+        synchronized (this) {
+            finished.addFirst(task);
+            prune();
+        }
+        publish(task);
+    }
+
+    private void prune() {
+        long expired = System.currentTimeMillis() - FINISHED_RETENTION;
+        while (!finished.isEmpty() && (finished.size() > MAX_FINISHED || finished.peekLast().getFinishedAt() < expired)) {
+            finished.removeLast();
+        }
+    }
+
+    private void publish(DownloadTask task) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        DownloadStatus status = task.toStatus();
+        subscribers.removeIf(subscriber -> {
+            try {
+                return !subscriber.test(status);
+            } catch (RuntimeException e) {
+                log.fine("Removing download subscriber: " + e.getMessage());
+                return true;
+            }
+        });
+    }
+}
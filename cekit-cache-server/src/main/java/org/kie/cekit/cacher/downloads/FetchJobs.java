@@ -0,0 +1,183 @@
+package org.kie.cekit.cacher.downloads;
+
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+import org.kie.cekit.cacher.objects.FetchJob;
+import org.kie.cekit.cacher.objects.FetchJobItem;
+import org.kie.cekit.cacher.objects.FetchRequest;
+import org.kie.cekit.cacher.objects.FetchResult;
+import org.kie.cekit.cacher.utils.UrlUtils;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Batches of artifacts fetched in background through the {@link DownloadScheduler}.
+ * Artifacts whose expected checksum is already cached are not downloaded again, downloaded artifacts are verified
+ * against it. Finished jobs are kept for a day.
+ */
+@ApplicationScoped
+public class FetchJobs {
+
+    private static final long RETENTION = TimeUnit.DAYS.toMillis(1);
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    @Inject
+    DownloadScheduler downloadScheduler;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    /**
+     * Starts fetching the given artifacts
+     *
+     * @param requests
+     * @return the new job status
+     */
+    public FetchJob submit(List<FetchRequest> requests) {
+        prune();
+        Job job = new Job(UUID.randomUUID().toString(), requests);
+        jobs.put(job.id, job);
+        log.info("Fetch job " + job.id + " started with " + requests.size() + " artifacts.");
+
+        List<CompletableFuture<Void>> fetches = new ArrayList<>();
+        for (FetchJobItem item : job.items) {
+            fetches.add(fetch(item));
+        }
+        CompletableFuture.allOf(fetches.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, e) -> {
+            job.finishedAt = System.currentTimeMillis();
+            log.info("Fetch job " + job.id + " finished.");
+            job.done.complete(null);
+        });
+        return job.toStatus();
+    }
+
+    /**
+     * @param id
+     * @return the job status
+     */
+    public Optional<FetchJob> get(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::toStatus);
+    }
+
+    /**
+     * @param id
+     * @return completed once the job finishes, empty if the job does not exist
+     */
+    public Optional<CompletableFuture<FetchJob>> whenDone(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(job -> job.done.thenApply(ignored -> job.toStatus()));
+    }
+
+    private CompletableFuture<Void> fetch(FetchJobItem item) {
+        if (null == item.getUrl() || !UrlUtils.isUrlValid(item.getUrl())) {
+            fail(item, "Invalid url " + item.getUrl());
+            return CompletableFuture.completedFuture(null);
+        }
+        Optional<ArtifactMetadata> cached = expected(item);
+        if (cached.isPresent()) {
+            complete(item, cached.get().getChecksum(), "File " + cached.get().getFileName() + " already exists.");
+            return CompletableFuture.completedFuture(null);
+        }
+        return downloadScheduler.submit(item.getUrl(), DownloadPriority.MANUAL, Optional.empty())
+                .handle((result, e) -> {
+                    if (null != e) {
+                        fail(item, e.getMessage());
+                    } else {
+                        verify(item, result);
+                    }
+                    return null;
+                });
+    }
+
+    private void verify(FetchJobItem item, FetchResult result) {
+        if (null == result.getChecksum()) {
+            fail(item, result.getMessage());
+        } else if (null != item.getExpectedChecksum()
+                && !expected(item).map(artifact -> artifact.getChecksum().equals(result.getChecksum())).orElse(false)) {
+            item.setChecksum(result.getChecksum());
+            fail(item, "Checksum mismatch, expected " + item.getExpectedChecksum() + " but got " + result.getChecksum());
+        } else {
+            complete(item, result.getChecksum(), result.getMessage());
+        }
+    }
+
+    /**
+     * @return the cached artifact with the expected checksum of the given item
+     */
+    private Optional<ArtifactMetadata> expected(FetchJobItem item) {
+        return null == item.getExpectedChecksum() ? Optional.empty() : artifactIndex.get(item.getExpectedChecksum());
+    }
+
+    private void complete(FetchJobItem item, String checksum, String message) {
+        synchronized (item) {
+            item.setChecksum(checksum);
+            item.setMessage(message);
+            item.setState(FetchJobItem.COMPLETED);
+        }
+    }
+
+    private void fail(FetchJobItem item, String message) {
+        synchronized (item) {
+            item.setMessage(message);
+            item.setState(FetchJobItem.FAILED);
+        }
+    }
+
+    private void prune() {
+        long expired = System.currentTimeMillis() - RETENTION;
+        jobs.values().removeIf(job -> job.finishedAt > 0 && job.finishedAt < expired);
+    }
+
+    private static class Job {
+        private final String id;
+        private final long createdAt = System.currentTimeMillis();
+        private final List<FetchJobItem> items;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile long finishedAt;
+
+        private Job(String id, List<FetchRequest> requests) {
+            this.id = id;
+            this.items = requests.stream()
+                    .map(request -> new FetchJobItem(null == request.getUrl() ? null : request.getUrl().trim(),
+                            null == request.getChecksum() || request.getChecksum().isEmpty() ? null : request.getChecksum().trim()))
+                    .collect(Collectors.toList());
+        }
+
+        private FetchJob toStatus() {
+            FetchJob status = new FetchJob();
+            status.setId(id);
+            status.setCreatedAt(createdAt);
+            status.setFinishedAt(finishedAt);
+            status.setState(finishedAt > 0 ? FetchJob.COMPLETED : FetchJob.RUNNING);
+            List<FetchJobItem> snapshot = new ArrayList<>();
+            for (FetchJobItem item : items) {
+                synchronized (item) {
+                    FetchJobItem copy = new FetchJobItem(item.getUrl(), item.getExpectedChecksum());
+                    copy.setState(item.getState());
+                    copy.setChecksum(item.getChecksum());
+                    copy.setMessage(item.getMessage());
+                    snapshot.add(copy);
+                }
+            }
+            status.setItems(snapshot);
+            status.setTotal(snapshot.size());
+            status.setCompleted((int) snapshot.stream().filter(item -> FetchJobItem.COMPLETED.equals(item.getState())).count());
+            status.setFailed((int) snapshot.stream().filter(item -> FetchJobItem.FAILED.equals(item.getState())).count());
+            return status;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package org.kie.cekit.cacher.downloads;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.kie.cekit.cacher.http.Destination;
+import org.kie.cekit.cacher.http.HttpClient;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+
+/**
+ * Ranks the mirrors of an artifact url, fastest first.
+ * <p>
+ * Urls starting with one of the base urls of a mirror group, see {@link CacherProperties#downloadMirrors()}, can be
+ * fetched from any base url of the group. The mirrors are ranked by the time they would take to send a reference
+ * amount of bytes given their latency and the throughput measured on previous transfers, a sample not measured yet
+ * counts as the median of the group. A mirror that failed is ranked last for a while.
+ * <p>
+ * Mirrors with no recent latency sample are probed in the background with a HEAD request, ranking never waits for
+ * them, the samples count from the next ranking on. A mirror answering that it does not have the artifact is left
+ * out for that artifact until it is probed again.
+ */
+@ApplicationScoped
+public class MirrorSelector {
+
+    private static final long PROBE_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+    // latency samples older than this are probed again
+    private static final long PROBE_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+    private static final long FAILURE_PENALTY = TimeUnit.MINUTES.toMillis(5);
+    private static final long REFERENCE_BYTES = 32L * 1024 * 1024;
+    // weight of a new sample on the moving averages
+    private static final double SMOOTHING = 0.3;
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    // base url -> measurements
+    private final Map<String, Mirror> mirrors = new ConcurrentHashMap<>();
+    // url -> when a probe found it missing
+    private final Map<String, Long> missing = new ConcurrentHashMap<>();
+    private final AtomicInteger probing = new AtomicInteger();
+    List<List<String>> groups;
+    OkHttpClient probeClient;
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    @HttpClient(Destination.ARTIFACTS)
+    OkHttpClient httpClient;
+
+    @PostConstruct
+    void init() {
+        groups = cacherProperties.downloadMirrors();
+        probeClient = httpClient.newBuilder().callTimeout(PROBE_TIMEOUT, TimeUnit.MILLISECONDS).build();
+        groups.forEach(group -> log.info("Mirror group " + group));
+    }
+
+    /**
+     * @param url
+     * @return the urls the artifact can be fetched from, the best one first, only the given url if it has no mirrors
+     */
+    public List<String> sources(String url) {
+        Optional<String> base = baseOf(url);
+        if (!base.isPresent()) {
+            return Collections.singletonList(url);
+        }
+        String path = url.substring(base.get().length());
+        List<String> group = groups.stream().filter(g -> g.contains(base.get())).findFirst().get();
+        List<String> sources = rank(group.stream().map(b -> b + path).collect(Collectors.toList()), group);
+        log.fine("Mirrors of " + url + ": " + sources);
+        return sources.isEmpty() ? Collections.singletonList(url) : sources;
+    }
+
+    /**
+     * @param url
+     * @return the hosts the artifact can be fetched from, the host of the url and of its mirrors, without probing them
+     */
+    public List<String> hosts(String url) {
+        Optional<String> base = baseOf(url);
+        if (!base.isPresent()) {
+            return Collections.singletonList(DownloadTask.hostOf(url));
+        }
+        String path = url.substring(base.get().length());
+        return groups.stream().filter(g -> g.contains(base.get())).findFirst().get().stream()
+                .map(b -> DownloadTask.hostOf(b + path))
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Records a completed transfer from the given source
+     *
+     * @param source url the bytes came from
+     * @param bytes
+     * @param millis how long the transfer took
+     */
+    public void transferred(String source, long bytes, long millis) {
+        mirrorOf(source).ifPresent(mirror -> mirror.transferred(bytes, millis));
+    }
+
+    /**
+     * @param source url that could not be fetched
+     */
+    public void failed(String source) {
+        mirrorOf(source).ifPresent(mirror -> mirror.failed(System.currentTimeMillis()));
+    }
+
+    /**
+     * @return true while probes are running
+     */
+    boolean probing() {
+        return probing.get() > 0;
+    }
+
+    private List<String> rank(List<String> candidates, List<String> bases) {
+        long now = System.currentTimeMillis();
+        probe(candidates, bases, now);
+        missing.values().removeIf(time -> now - time > PROBE_INTERVAL);
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (!missing.containsKey(candidates.get(i))) {
+                indexes.add(i);
+            }
+        }
+        List<Mirror> group = bases.stream().map(this::mirror).collect(Collectors.toList());
+        double latency = median(group.stream().filter(m -> m.latencyMillis >= 0).mapToDouble(m -> m.latencyMillis));
+        double transfer = median(group.stream().filter(m -> m.bytesPerMilli > 0).mapToDouble(m -> REFERENCE_BYTES / m.bytesPerMilli));
+        indexes.sort(Comparator.<Integer, Boolean>comparing(i -> group.get(i).failedRecently(now))
+                .thenComparingDouble(i -> group.get(i).cost(latency, transfer)));
+        return indexes.stream().map(candidates::get).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the median of the values, 0 if there are none
+     */
+    private static double median(DoubleStream values) {
+        double[] sorted = values.sorted().toArray();
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    /**
+     * Sends, without waiting for the answers, a HEAD request to every candidate whose mirror has no recent latency
+     * sample and is not being probed already. The answers are written from the http client threads.
+     */
+    private void probe(List<String> candidates, List<String> bases, long now) {
+        for (int i = 0; i < candidates.size(); i++) {
+            String candidate = candidates.get(i);
+            Mirror mirror = mirror(bases.get(i));
+            if (null == HttpUrl.parse(candidate) || !mirror.startProbe(now, PROBE_INTERVAL)) {
+                continue;
+            }
+            probing.incrementAndGet();
+            long start = System.currentTimeMillis();
+            Request request = new Request.Builder().url(candidate).head().header("Accept-Encoding", "identity").build();
+            probeClient.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    try {
+                        log.fine("Probe of " + call.request().url() + " failed: " + e.getMessage());
+                        mirror.probeFailed(System.currentTimeMillis());
+                    } finally {
+                        probing.decrementAndGet();
+                    }
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try (Response r = response) {
+                        long end = System.currentTimeMillis();
+                        if (r.code() == 404 || r.code() == 410) {
+                            missing.put(candidate, end);
+                            mirror.probed(end);
+                        } else if (r.code() >= 400) {
+                            mirror.probeFailed(end);
+                        } else {
+                            missing.remove(candidate);
+                            mirror.latency(end - start);
+                            mirror.probed(end);
+                        }
+                    } finally {
+                        probing.decrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+
+    private Optional<Mirror> mirrorOf(String source) {
+        return baseOf(source).map(this::mirror);
+    }
+
+    /**
+     * @return the longest mirror base url the given url starts with
+     */
+    private Optional<String> baseOf(String url) {
+        return groups.stream()
+                .flatMap(List::stream)
+                .filter(url::startsWith)
+                .max(Comparator.comparingInt(String::length));
+    }
+
+    private Mirror mirror(String base) {
+        return mirrors.computeIfAbsent(base, b -> new Mirror());
+    }
+
+    /**
+     * Moving averages of the latency and throughput of a mirror. Updated under its lock by the downloads and the
+     * probe callbacks, read without it.
+     */
+    static class Mirror {
+
+        // -1 until measured
+        volatile double latencyMillis = -1;
+        volatile double bytesPerMilli = -1;
+        volatile long probedAt;
+        volatile long failedAt;
+        private boolean probing;
+
+        /**
+         * Marks the mirror as being probed, so a single probe runs at once
+         *
+         * @return false if its latency sample is recent or a probe is running
+         */
+        synchronized boolean startProbe(long now, long interval) {
+            if (probing || now - probedAt <= interval) {
+                return false;
+            }
+            probing = true;
+            return true;
+        }
+
+        synchronized void latency(long millis) {
+            latencyMillis = latencyMillis < 0 ? millis : latencyMillis + SMOOTHING * (millis - latencyMillis);
+        }
+
+        synchronized void probed(long time) {
+            probedAt = time;
+            probing = false;
+        }
+
+        synchronized void probeFailed(long time) {
+            probedAt = time;
+            failedAt = time;
+            probing = false;
+        }
+
+        synchronized void failed(long time) {
+            failedAt = time;
+        }
+
+        synchronized void transferred(long bytes, long millis) {
+            if (bytes <= 0 || millis <= 0) {
+                return;
+            }
+            double rate = (double) bytes / millis;
+            bytesPerMilli = bytesPerMilli < 0 ? rate : bytesPerMilli + SMOOTHING * (rate - bytesPerMilli);
+            failedAt = 0;
+        }
+
+        /**
+         * @param latency  latency to count when it was not measured yet
+         * @param transfer milliseconds to send the reference amount of bytes to count when the throughput was not
+         *                 measured yet
+         * @return estimated milliseconds to fetch the reference amount of bytes
+         */
+        double cost(double latency, double transfer) {
+            return (latencyMillis >= 0 ? latencyMillis : latency) + (bytesPerMilli > 0 ? REFERENCE_BYTES / bytesPerMilli : transfer);
+        }
+
+        boolean failedRecently(long now) {
+            return failedAt > 0 && now - failedAt < FAILURE_PENALTY;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package org.kie.cekit.cacher.downloads;
+
+import okhttp3.OkHttpClient;
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.http.Destination;
+import org.kie.cekit.cacher.http.HttpClient;
+import org.kie.cekit.cacher.objects.FetchResult;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.ArtifactDigester;
+import org.kie.cekit.cacher.utils.CacherUtils;
+import org.kie.cekit.cacher.utils.UrlUtils;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Fetches a missing artifact while it is being sent to the client that asked for it.
+ * <p>
+ * The upstream bytes are written to the tmp dir and digested as they are sent. The artifact is stored only if its
+ * digest matches the checksum the client asked for, otherwise the last chunk is never sent, so the client sees a
+ * truncated response instead of a wrong artifact. If the client goes away the download goes on so the artifact
+ * still gets cached.
+ * <p>
+ * A read through is a download like the queued ones: it runs in a slot of the {@link DownloadScheduler}, its outcome
+ * counts on the circuit of the upstream host, it is held under the bandwidth limits and the {@link DownloadTracker}
+ * reports its progress.
+ */
+@ApplicationScoped
+public class ReadThrough {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    CacherUtils cacherUtils;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    ArtifactDownloader artifactDownloader;
+
+    @Inject
+    DownloadScheduler downloadScheduler;
+
+    @Inject
+    DownloadTracker downloadTracker;
+
+    @Inject
+    UpstreamHealth upstreamHealth;
+
+    @Inject
+    MirrorSelector mirrorSelector;
+
+    @Inject
+    @HttpClient(Destination.ARTIFACTS)
+    OkHttpClient httpClient;
+
+    /**
+     * Connects to the upstream of the url, or one of its mirrors. The read through takes a download slot from the
+     * {@link DownloadScheduler} and skips the hosts whose circuit is open, like the queued downloads.
+     *
+     * @param url
+     * @param checksum md5, sha1 or sha256 the artifact must have
+     * @return the transfer to run, empty if the artifact is already being fetched, see {@link #await(String)}
+     * @throws UpstreamUnavailableException if no download slot is free or the circuits of all the upstreams are open
+     * @throws IOException                  if no upstream could be reached
+     */
+    public Optional<Transfer> open(String url, String checksum) throws IOException {
+        String fileName = UrlUtils.getFileName(url);
+        Path tmpFile = Paths.get(cacherProperties.getArtifactsTmpDir(), fileName);
+        Optional<DownloadTask> task = downloadScheduler.start(url);
+        if (!task.isPresent()) {
+            return Optional.empty();
+        }
+        if (!artifactIndex.markInProgress(fileName)) {
+            downloadScheduler.finished(task.get(), FetchResult.inProgress(fileName));
+            return Optional.empty();
+        }
+        if (Files.exists(tmpFile) && !artifactDownloader.isResumable(tmpFile)) {
+            finish(task.get(), FetchResult.inProgress(fileName));
+            return Optional.empty();
+        }
+        try {
+            // the partial file of an interrupted download is overwritten
+            Files.deleteIfExists(tmpFile.resolveSibling(fileName + ArtifactDownloader.RESUME_SUFFIX));
+            return Optional.of(connect(task.get(), checksum, tmpFile));
+        } catch (IOException e) {
+            finish(task.get(), FetchResult.failed(fileName, e.getMessage()));
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the fetch of the url already in progress, a read through or a scheduled download.
+     * Nothing is started when no fetch is in progress.
+     *
+     * @param url
+     * @return the outcome of the fetch, empty if none is in progress
+     * @throws UpstreamUnavailableException if the fetch does not end in time
+     * @throws IOException                  if the fetch failed unexpectedly
+     */
+    public Optional<FetchResult> await(String url) throws IOException {
+        Optional<CompletableFuture<FetchResult>> fetch = downloadScheduler.inFlight(url);
+        if (!fetch.isPresent()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(fetch.get().get(cacherProperties.downloadWait(), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            throw new UpstreamUnavailableException("Artifact " + url + " is still being fetched, try again later.",
+                                                   TimeUnit.SECONDS.toMillis(cacherProperties.servingRetryAfter()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpstreamUnavailableException("Interrupted while waiting for " + url, 0);
+        } catch (ExecutionException e) {
+            throw new IOException("Fetch of " + url + " failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private Transfer connect(DownloadTask task, String checksum, Path tmpFile) throws IOException {
+        String url = task.getUrl();
+        IOException failure = null;
+        long wait = Long.MAX_VALUE;
+        for (String source : mirrorSelector.sources(url)) {
+            String host = DownloadTask.hostOf(source);
+            long closed = upstreamHealth.acquire(host);
+            if (closed > 0) {
+                log.fine("Host " + host + " unavailable, circuit open, skipping it for the read through of " + url);
+                wait = Math.min(wait, closed);
+                continue;
+            }
+            try {
+                return new Transfer(task, checksum, tmpFile, source, Upstream.open(httpClient, source, 0, -1, null));
+            } catch (IOException e) {
+                upstreamHealth.record(host, UpstreamException.isTransient(e), e.getMessage());
+                mirrorSelector.failed(source);
+                log.warning("Read through of " + url + " from " + source + " failed: " + e.getMessage());
+                failure = e;
+            }
+        }
+        if (null != failure) {
+            throw failure;
+        }
+        throw new UpstreamUnavailableException("Upstream of " + url + " unavailable, circuit open.", wait);
+    }
+
+    private void finish(DownloadTask task, FetchResult outcome) {
+        artifactIndex.clearInProgress(outcome.getFileName());
+        downloadScheduler.finished(task, outcome);
+    }
+
+    /**
+     * A read through ready to be sent
+     */
+    public class Transfer implements Closeable {
+
+        private final DownloadTask task;
+        private final String url;
+        private final String checksum;
+        private final Path tmpFile;
+        private final String source;
+        private final Upstream upstream;
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private Transfer(DownloadTask task, String checksum, Path tmpFile, String source, Upstream upstream) {
+            this.task = task;
+            this.url = task.getUrl();
+            this.checksum = checksum;
+            this.tmpFile = tmpFile;
+            this.source = source;
+            this.upstream = upstream;
+        }
+
+        public String getFileName() {
+            return tmpFile.getFileName().toString();
+        }
+
+        /**
+         * @return artifact length, -1 if the upstream did not send it
+         */
+        public long getContentLength() {
+            return upstream.contentLength();
+        }
+
+        /**
+         * Sends the upstream bytes to the client while storing them.
+         * Each chunk is sent once the next one is read, the last one only if the digest matches.
+         *
+         * @param output
+         * @throws IOException if the upstream failed or the artifact does not match the checksum
+         */
+        public void writeTo(OutputStream output) throws IOException {
+            if (!started.compareAndSet(false, true)) {
+                throw new IOException("Read through of " + url + " already closed");
+            }
+            String fileName = getFileName();
+            String host = DownloadTask.hostOf(source);
+            long start = System.currentTimeMillis();
+            ArtifactDigester digester = new ArtifactDigester();
+            WritableByteChannel client = Channels.newChannel(output);
+            LongConsumer progress = artifactDownloader.progress(url);
+            boolean clientGone = false;
+            boolean received = false;
+            FetchResult outcome = null;
+            log.info("Reading through " + url + (url.equals(source) ? "" : " from " + source));
+            downloadTracker.transferStarted(url, upstream.contentLength(), 0);
+            try {
+                ByteBuffer current = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                ByteBuffer previous = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                previous.flip();
+                long length = 0;
+                try (Upstream body = upstream;
+                     ReadableByteChannel input = Channels.newChannel(body.body());
+                     FileChannel file = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    int read;
+                    while ((read = input.read(current)) != -1) {
+                        length += read;
+                        progress.accept(read);
+                        current.flip();
+                        digester.update(current);
+                        current.rewind();
+                        while (current.hasRemaining()) {
+                            file.write(current);
+                        }
+                        current.rewind();
+                        clientGone = send(previous, client, clientGone);
+                        ByteBuffer swap = previous;
+                        previous = current;
+                        current = swap;
+                        current.clear();
+                    }
+                }
+                received = true;
+                upstreamHealth.record(host, false, null);
+                mirrorSelector.transferred(source, length, System.currentTimeMillis() - start);
+                if (!digester.matches(checksum)) {
+                    throw new IOException("Checksum mismatch for " + url + ", expected " + checksum + " but got " + digester.md5());
+                }
+                outcome = cacherUtils.persist(url, tmpFile, digester, Optional.empty(), start);
+                log.info(outcome.getMessage());
+                if (!send(previous, client, clientGone)) {
+                    output.flush();
+                }
+            } catch (IOException e) {
+                if (!received) {
+                    upstreamHealth.record(host, UpstreamException.isTransient(e), e.getMessage());
+                }
+                if (null == outcome) {
+                    log.warning("Read through of " + url + " failed: " + e.getMessage());
+                    Files.deleteIfExists(tmpFile);
+                    outcome = FetchResult.failed(fileName, e.getMessage());
+                }
+                throw e;
+            } finally {
+                if (!received && null == outcome) {
+                    // neither completed nor failed with an IOException, give the attempt back
+                    upstreamHealth.release(host);
+                }
+                finish(task, null == outcome ? FetchResult.failed(fileName, "Read through interrupted") : outcome);
+            }
+        }
+
+        /**
+         * Gives up a transfer that was never written, i.e. the client went away before the response was sent.
+         * Its download slot is given back and callers waiting for the url are released. Does nothing once
+         * {@link #writeTo(OutputStream)} started.
+         */
+        @Override
+        public void close() {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+            log.info("Read through of " + url + " never sent, giving it up.");
+            upstream.close();
+            upstreamHealth.release(DownloadTask.hostOf(source));
+            finish(task, FetchResult.failed(getFileName(), "Read through of " + url + " not sent"));
+        }
+
+        /**
+         * @return true if the client is gone, the bytes are then dropped and the transfer goes on to cache them
+         */
+        private boolean send(ByteBuffer buffer, WritableByteChannel client, boolean clientGone) {
+            if (clientGone) {
+                return true;
+            }
+            try {
+                while (buffer.hasRemaining()) {
+                    client.write(buffer);
+                }
+                return false;
+            } catch (IOException e) {
+                log.info("Client of " + url + " went away, still caching it: " + e.getMessage());
+                return true;
+            }
+        }
+    }
+}
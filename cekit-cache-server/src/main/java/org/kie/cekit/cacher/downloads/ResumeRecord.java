@@ -0,0 +1,87 @@
+package org.kie.cekit.cacher.downloads;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import org.kie.cekit.cacher.objects.PlainArtifact;
+
+/**
+ * Kept next to a partial download, ${base.dir}/artifacts/tmp/{fileName}.resume, so it can be continued
+ * with a range request after a failure or a restart.
+ */
+@RegisterForReflection
+public class ResumeRecord {
+
+    private String url;
+    private long expectedLength;
+    private String etag;
+    private String lastModified;
+    private PlainArtifact buildInfo;
+
+    public ResumeRecord() {
+    }
+
+    public ResumeRecord(String url, long expectedLength, String etag, String lastModified, PlainArtifact buildInfo) {
+        this.url = url;
+        this.expectedLength = expectedLength;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.buildInfo = buildInfo;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public long getExpectedLength() {
+        return expectedLength;
+    }
+
+    public void setExpectedLength(long expectedLength) {
+        this.expectedLength = expectedLength;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public PlainArtifact getBuildInfo() {
+        return buildInfo;
+    }
+
+    public void setBuildInfo(PlainArtifact buildInfo) {
+        this.buildInfo = buildInfo;
+    }
+
+    /**
+     * @return the validator sent on If-Range, the partial content is only served if the file did not change
+     */
+    public String validator() {
+        return null != etag ? etag : lastModified;
+    }
+
+    @Override
+    public String toString() {
+        return "ResumeRecord{" +
+                "url='" + url + '\'' +
+                ", expectedLength=" + expectedLength +
+                ", etag='" + etag + '\'' +
+                ", lastModified='" + lastModified + '\'' +
+                ", buildInfo=" + buildInfo +
+                '}';
+    }
+}
@@ -0,0 +1,29 @@
+package org.kie.cekit.cacher.downloads;
+
+/**
+ * How an artifact is split in ranges fetched in parallel.
+ */
+class Segments {
+
+    static final Segments SINGLE = new Segments(1, Long.MAX_VALUE);
+
+    final int parallelism;
+    final long size;
+
+    Segments(int parallelism, long size) {
+        this.parallelism = parallelism;
+        this.size = size;
+    }
+
+    /**
+     * @param length artifact length
+     * @return true if the artifact is worth splitting
+     */
+    boolean apply(long length) {
+        return parallelism > 1 && length >= 2 * size;
+    }
+
+    int count(long length) {
+        return (int) ((length + size - 1) / size);
+    }
+}
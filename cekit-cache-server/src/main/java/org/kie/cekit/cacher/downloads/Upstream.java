@@ -0,0 +1,161 @@
+package org.kie.cekit.cacher.downloads;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+
+/**
+ * Response of an artifact request. Http urls go through the shared http client, other schemes like file: are
+ * opened as plain url connections, without ranges.
+ */
+class Upstream implements Closeable {
+
+    private final Response response;
+    private final URLConnection connection;
+    // requested range, end -1 for the end of the file
+    private final long offset;
+    private final long end;
+
+    private Upstream(Response response, URLConnection connection, long offset, long end) {
+        this.response = response;
+        this.connection = connection;
+        this.offset = offset;
+        this.end = end;
+    }
+
+    /**
+     * Opens the url, asking for the given range when offset is greater than zero or end is given.
+     *
+     * @param end       last byte, inclusive, -1 for the end of the file
+     * @param validator sent on If-Range, can be null
+     * @throws UpstreamException on http errors
+     */
+    static Upstream open(OkHttpClient client, String url, long offset, long end, String validator) throws IOException {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (null == httpUrl) {
+            URLConnection connection = new URL(url).openConnection();
+            connection.connect();
+            return new Upstream(null, connection, 0, -1);
+        }
+        Request.Builder request = new Request.Builder()
+                .url(httpUrl)
+                // the body must be the artifact bytes, lengths and ranges refer to them
+                .header("Accept-Encoding", "identity");
+        if (offset > 0 || end >= 0) {
+            request.header("Range", "bytes=" + offset + "-" + (end >= 0 ? end : ""));
+            if (null != validator) {
+                request.header("If-Range", validator);
+            }
+        }
+        Response response = client.newCall(request.build()).execute();
+        if (response.code() >= 400) {
+            response.close();
+            throw new UpstreamException(url, response.code());
+        }
+        return new Upstream(response, null, offset, end);
+    }
+
+    /**
+     * @return true if only the requested range is being sent, its Content-Range must start at the requested offset
+     * and end where requested
+     */
+    boolean isPartial() {
+        return null != response && response.code() == 206 && matches(response.header("Content-Range"), offset, end);
+    }
+
+    /**
+     * @return true if the whole file is being sent
+     */
+    boolean isComplete() {
+        return null == response || response.code() != 206;
+    }
+
+    /**
+     * @param contentRange Content-Range header, like bytes 100-199/1000
+     * @param offset       first byte requested
+     * @param end          last byte requested, -1 for the end of the file
+     * @return true if the header describes the requested range
+     */
+    static boolean matches(String contentRange, long offset, long end) {
+        if (null == contentRange || !contentRange.startsWith("bytes ")) {
+            return false;
+        }
+        String range = contentRange.substring("bytes ".length()).trim();
+        int dash = range.indexOf('-');
+        int slash = range.indexOf('/');
+        if (dash < 0 || slash < dash) {
+            return false;
+        }
+        try {
+            long first = Long.parseLong(range.substring(0, dash).trim());
+            long last = Long.parseLong(range.substring(dash + 1, slash).trim());
+            String total = range.substring(slash + 1).trim();
+            if (end >= 0) {
+                return first == offset && last == end;
+            }
+            // open ended, it must reach the end of the file when the length is known
+            return first == offset && ("*".equals(total) || last == Long.parseLong(total) - 1);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    boolean acceptsRanges() {
+        return null != response && "bytes".equalsIgnoreCase(response.header("Accept-Ranges"));
+    }
+
+    /**
+     * @return body length, -1 if unknown
+     */
+    long contentLength() {
+        if (null == response) {
+            return connection.getContentLengthLong();
+        }
+        ResponseBody body = response.body();
+        return null == body ? -1 : body.contentLength();
+    }
+
+    String header(String name) {
+        return null == response ? connection.getHeaderField(name) : response.header(name);
+    }
+
+    /**
+     * @return the validator to send on If-Range
+     */
+    String validator() {
+        String etag = header("ETag");
+        return null != etag ? etag : header("Last-Modified");
+    }
+
+    InputStream body() throws IOException {
+        if (null == response) {
+            return connection.getInputStream();
+        }
+        ResponseBody body = response.body();
+        if (null == body) {
+            throw new IOException("Empty response body");
+        }
+        return body.byteStream();
+    }
+
+    @Override
+    public void close() {
+        if (null != response) {
+            response.close();
+        } else {
+            try {
+                connection.getInputStream().close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
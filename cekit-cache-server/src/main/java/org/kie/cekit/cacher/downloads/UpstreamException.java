@@ -0,0 +1,44 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.UnknownServiceException;
+import java.nio.file.FileSystemException;
+
+/**
+ * Http error answered by the upstream of an artifact.
+ */
+public class UpstreamException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int code;
+
+    public UpstreamException(String url, int code) {
+        super("Server returned HTTP " + code + " for " + url);
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Server errors, timeouts, throttling and connection failures are worth retrying, client errors like a missing
+     * file or a bad url are not, neither are local file system errors.
+     *
+     * @param e
+     * @return true if the same download can succeed later
+     */
+    public static boolean isTransient(IOException e) {
+        if (e instanceof UpstreamException) {
+            int code = ((UpstreamException) e).code;
+            return code >= 500 || code == 408 || code == 429;
+        }
+        return !(e instanceof FileNotFoundException
+                || e instanceof MalformedURLException
+                || e instanceof UnknownServiceException
+                || e instanceof FileSystemException);
+    }
+}
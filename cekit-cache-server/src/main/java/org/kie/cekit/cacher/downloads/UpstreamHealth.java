@@ -0,0 +1,116 @@
+package org.kie.cekit.cacher.downloads;
+
+import org.kie.cekit.cacher.objects.UpstreamHostStatus;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.lang.invoke.MethodHandles;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a circuit breaker and the retry counters of every upstream host, and computes the retry delays.
+ */
+@ApplicationScoped
+public class UpstreamHealth {
+
+    // retries never wait longer than this
+    private static final long MAX_RETRY_DELAY = 10 * 60 * 1000;
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final Map<String, CircuitBreaker> breakers = new HashMap<>();
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    /**
+     * @param host
+     * @return 0 if a download can be tried now against the host, otherwise how many milliseconds to wait
+     */
+    public synchronized long acquire(String host) {
+        return breaker(host).acquire(System.currentTimeMillis());
+    }
+
+    /**
+     * @param hosts hosts a download can be fetched from
+     * @return 0 if the circuit of any of the hosts lets a download through now, otherwise how many milliseconds to
+     * wait for the first of them to do so. Nothing is acquired.
+     */
+    public synchronized long waitFor(Collection<String> hosts) {
+        long now = System.currentTimeMillis();
+        return hosts.stream().mapToLong(host -> breaker(host).waitTime(now)).min().orElse(0);
+    }
+
+    /**
+     * Records the outcome of a download tried after {@link #acquire(String)} returned 0.
+     * Only transient failures count against the host, a missing file still means the host is up.
+     *
+     * @param host
+     * @param transientFailure true if the download failed with a transient error
+     * @param error            failure message, null on success
+     */
+    public synchronized void record(String host, boolean transientFailure, String error) {
+        CircuitBreaker breaker = breaker(host);
+        String before = breaker.state(System.currentTimeMillis());
+        if (transientFailure) {
+            breaker.failure(error, System.currentTimeMillis());
+        } else {
+            breaker.success();
+        }
+        String after = breaker.state(System.currentTimeMillis());
+        if (!before.equals(after)) {
+            log.info("Circuit of host " + host + " is now " + after + (null == error || !transientFailure ? "" : ", last error: " + error));
+        }
+    }
+
+    /**
+     * Gives back an acquired attempt that did not contact the host
+     */
+    public synchronized void release(String host) {
+        breaker(host).release();
+    }
+
+    public synchronized void retried(String host) {
+        breaker(host).retried();
+    }
+
+    /**
+     * Exponential backoff with jitter, the delay is picked at random between half and the whole of the base delay
+     * doubled on every attempt, so many downloads failing together do not retry together.
+     *
+     * @param attempt attempts already made, starting at 1
+     * @return milliseconds to wait before the next attempt
+     */
+    public long retryDelay(int attempt) {
+        return retryDelay(cacherProperties.downloadRetryDelay(), attempt);
+    }
+
+    static long retryDelay(long baseDelay, int attempt) {
+        long delay = Math.min(MAX_RETRY_DELAY, baseDelay << Math.min(attempt - 1, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * @return circuit state and counters of every host contacted since startup
+     */
+    public synchronized List<UpstreamHostStatus> hosts() {
+        long now = System.currentTimeMillis();
+        return breakers.values().stream()
+                .map(breaker -> breaker.toStatus(now))
+                .sorted((a, b) -> a.getHost().compareTo(b.getHost()))
+                .collect(Collectors.toList());
+    }
+
+    private CircuitBreaker breaker(String host) {
+        return breakers.computeIfAbsent(host, h -> new CircuitBreaker(h,
+                cacherProperties.downloadBreakerFailures(),
+                cacherProperties.downloadBreakerOpen()));
+    }
+}
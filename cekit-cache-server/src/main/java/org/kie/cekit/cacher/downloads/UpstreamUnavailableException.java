@@ -0,0 +1,26 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.io.IOException;
+
+/**
+ * A download that can not start now, because no download slot is free or the circuit of its upstream is open.
+ */
+public class UpstreamUnavailableException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfter;
+
+    /**
+     * @param message
+     * @param retryAfter milliseconds after which the download may start, 0 if unknown
+     */
+    public UpstreamUnavailableException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
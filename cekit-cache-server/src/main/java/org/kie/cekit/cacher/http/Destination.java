@@ -0,0 +1,63 @@
+package org.kie.cekit.cacher.http;
+
+import okhttp3.Protocol;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kinds of outbound traffic, each one with its own timeouts. All of them share the same connection pool.
+ * The timeouts here are the defaults, each one can be configured, see {@link org.kie.cekit.cacher.properties.CacherProperties#httpConnectTimeout(Destination)}.
+ */
+public enum Destination {
+
+    // artifacts downloads, long transfers without call timeout.
+    // HTTP/1.1 only so each segment of a segmented download gets its own TCP connection.
+    ARTIFACTS(30, 5 * 60, 0, Collections.singletonList(Protocol.HTTP_1_1)),
+    // nightly builds properties files
+    BUILDS(10, 30, 60, Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)),
+    // chat notifications
+    WEBHOOK(10, 30, 30, Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)),
+    // github rest api
+    GITHUB(10, 30, 60, Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+
+    private final long connectTimeout;
+    private final long readTimeout;
+    private final long callTimeout;
+    private final List<Protocol> protocols;
+
+    Destination(long connectTimeout, long readTimeout, long callTimeout, List<Protocol> protocols) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.callTimeout = callTimeout;
+        this.protocols = protocols;
+    }
+
+    public long connectTimeout(TimeUnit unit) {
+        return unit.convert(connectTimeout, TimeUnit.SECONDS);
+    }
+
+    public long readTimeout(TimeUnit unit) {
+        return unit.convert(readTimeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return whole call timeout, 0 means no timeout
+     */
+    public long callTimeout(TimeUnit unit) {
+        return unit.convert(callTimeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the name of the destination on the properties, i.e. artifacts
+     */
+    public String propertyName() {
+        return name().toLowerCase();
+    }
+
+    public List<Protocol> protocols() {
+        return protocols;
+    }
+}
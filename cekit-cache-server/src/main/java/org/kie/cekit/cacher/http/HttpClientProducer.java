@@ -0,0 +1,97 @@
+package org.kie.cekit.cacher.http;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Dependent;
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import java.lang.invoke.MethodHandles;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Produces the http clients used for every outbound call.
+ * There is a single connection pool and dispatcher, the client of each {@link Destination} only changes the
+ * timeouts, configured on {@link CacherProperties}, and the protocols, so connections are kept alive and reused
+ * across all callers.
+ */
+@ApplicationScoped
+public class HttpClientProducer {
+
+    private static final int MAX_IDLE_CONNECTIONS = 16;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final OkHttpClient shared = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .dispatcher(new Dispatcher())
+            .build();
+    private final Map<Destination, OkHttpClient> clients = new EnumMap<>(Destination.class);
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Produces
+    @Dependent
+    @HttpClient(Destination.ARTIFACTS)
+    public OkHttpClient artifactsClient() {
+        return client(Destination.ARTIFACTS);
+    }
+
+    @Produces
+    @Dependent
+    @HttpClient(Destination.BUILDS)
+    public OkHttpClient buildsClient() {
+        return client(Destination.BUILDS);
+    }
+
+    @Produces
+    @Dependent
+    @HttpClient(Destination.WEBHOOK)
+    public OkHttpClient webhookClient() {
+        return client(Destination.WEBHOOK);
+    }
+
+    @Produces
+    @Dependent
+    @HttpClient(Destination.GITHUB)
+    public OkHttpClient githubClient() {
+        return client(Destination.GITHUB);
+    }
+
+    /**
+     * @param destination
+     * @return the client of the given destination, built once
+     */
+    public synchronized OkHttpClient client(Destination destination) {
+        return clients.computeIfAbsent(destination, d -> {
+            long connectTimeout = cacherProperties.httpConnectTimeout(d);
+            long readTimeout = cacherProperties.httpReadTimeout(d);
+            long callTimeout = cacherProperties.httpCallTimeout(d);
+            log.fine("Http client for " + d + ": connect timeout " + connectTimeout + "s, read timeout " + readTimeout
+                             + "s, call timeout " + callTimeout + "s");
+            return shared.newBuilder()
+                    .connectTimeout(connectTimeout, TimeUnit.SECONDS)
+                    .readTimeout(readTimeout, TimeUnit.SECONDS)
+                    .writeTimeout(readTimeout, TimeUnit.SECONDS)
+                    .callTimeout(callTimeout, TimeUnit.SECONDS)
+                    .protocols(d.protocols())
+                    .build();
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        log.fine("Closing http connections");
+        shared.dispatcher().executorService().shutdown();
+        shared.connectionPool().evictAll();
+    }
+}
@@ -5,11 +5,13 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import org.kie.cekit.cacher.http.Destination;
+import org.kie.cekit.cacher.http.HttpClient;
 import org.kie.cekit.cacher.notification.Notification;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 import java.lang.invoke.MethodHandles;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 @ApplicationScoped
@@ -18,6 +20,10 @@ public class GChatNotifier implements Notification {
     private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
     private final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
 
+    @Inject
+    @HttpClient(Destination.WEBHOOK)
+    OkHttpClient client;
+
     @Override
     public void send(String message, String webhook) {
 
@@ -25,11 +31,6 @@ public class GChatNotifier implements Notification {
         log.fine("Trying to notify " + webhook + " with payload " + jsonPayload);
         RequestBody body = RequestBody.create(JSON, jsonPayload);
 
-        OkHttpClient client = new OkHttpClient.Builder()
-                .callTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .build();
-
         Request request = new Request.Builder()
                 .addHeader("content-type", "application/json; charset=UTF-8")
                 .post(body)
@@ -0,0 +1,84 @@
+package org.kie.cekit.cacher.objects;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * Answer of a batch lookup for one checksum
+ */
+@RegisterForReflection
+public class ArtifactAvailability {
+
+    // the checksum as it was looked up, md5, sha1 or sha256
+    private String checksum;
+    private boolean available;
+    // md5 of the artifact, the one used to fetch it, only set if available
+    private String md5;
+    private String fileName;
+    private long size;
+
+    public ArtifactAvailability() {
+    }
+
+    public ArtifactAvailability(String checksum) {
+        this.checksum = checksum;
+    }
+
+    public ArtifactAvailability(String checksum, ArtifactMetadata artifact) {
+        this.checksum = checksum;
+        this.available = true;
+        this.md5 = artifact.getChecksum();
+        this.fileName = artifact.getFileName();
+        this.size = artifact.getSize();
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    public String getMd5() {
+        return md5;
+    }
+
+    public void setMd5(String md5) {
+        this.md5 = md5;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    @Override
+    public String toString() {
+        return "ArtifactAvailability{" +
+                "checksum='" + checksum + '\'' +
+                ", available=" + available +
+                ", md5='" + md5 + '\'' +
+                ", fileName='" + fileName + '\'' +
+                ", size=" + size +
+                '}';
+    }
+}
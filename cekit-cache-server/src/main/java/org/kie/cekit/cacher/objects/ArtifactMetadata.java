@@ -0,0 +1,176 @@
+package org.kie.cekit.cacher.objects;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Holds what the cacher knows about a persisted artifact,
+ * it is the entry kept by the {@link org.kie.cekit.cacher.artifacts.ArtifactIndex}
+ */
+@RegisterForReflection
+public class ArtifactMetadata {
+
+    private static final AtomicLongFieldUpdater<ArtifactMetadata> HIT_COUNT =
+            AtomicLongFieldUpdater.newUpdater(ArtifactMetadata.class, "hitCount");
+
+    // md5, it is also the artifact directory name
+    private String checksum;
+    private String sha1;
+    private String sha256;
+    private String fileName;
+    private long size;
+    private long lastModified;
+    private String sourceUrl;
+    // nightly build information, only available for artifacts downloaded by the nightly builds watcher
+    private String buildDate;
+    private String version;
+    private String branch;
+    // how long the download took, in milliseconds
+    private long fetchDuration;
+    // epoch millis of the last time the artifact was served
+    private volatile long lastAccess;
+    // how many times the artifact was served, concurrent requests update it through HIT_COUNT
+    private volatile long hitCount;
+
+    public ArtifactMetadata() {
+    }
+
+    public ArtifactMetadata(String checksum, String fileName) {
+        this.checksum = checksum;
+        this.fileName = fileName;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    public String getSha1() {
+        return sha1;
+    }
+
+    public void setSha1(String sha1) {
+        this.sha1 = sha1;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public String getSourceUrl() {
+        return sourceUrl;
+    }
+
+    public void setSourceUrl(String sourceUrl) {
+        this.sourceUrl = sourceUrl;
+    }
+
+    public String getBuildDate() {
+        return buildDate;
+    }
+
+    public void setBuildDate(String buildDate) {
+        this.buildDate = buildDate;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public void setBranch(String branch) {
+        this.branch = branch;
+    }
+
+    public long getFetchDuration() {
+        return fetchDuration;
+    }
+
+    public void setFetchDuration(long fetchDuration) {
+        this.fetchDuration = fetchDuration;
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    public void setLastAccess(long lastAccess) {
+        this.lastAccess = lastAccess;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public void setHitCount(long hitCount) {
+        this.hitCount = hitCount;
+    }
+
+    /**
+     * Records that the artifact was served at the given time, safe to call from concurrent requests
+     *
+     * @param time epoch millis
+     */
+    public void served(long time) {
+        lastAccess = time;
+        HIT_COUNT.incrementAndGet(this);
+    }
+
+    @Override
+    public String toString() {
+        return "ArtifactMetadata{" +
+                "checksum='" + checksum + '\'' +
+                ", sha1='" + sha1 + '\'' +
+                ", sha256='" + sha256 + '\'' +
+                ", fileName='" + fileName + '\'' +
+                ", size=" + size +
+                ", lastModified=" + lastModified +
+                ", sourceUrl='" + sourceUrl + '\'' +
+                ", buildDate='" + buildDate + '\'' +
+                ", version='" + version + '\'' +
+                ", branch='" + branch + '\'' +
+                ", fetchDuration=" + fetchDuration +
+                ", lastAccess=" + lastAccess +
+                ", hitCount=" + hitCount +
+                '}';
+    }
+}
@@ -0,0 +1,44 @@
+package org.kie.cekit.cacher.objects;
+
+import java.util.List;
+
+/**
+ * A page of the artifacts listing, nextCursor is null on the last page.
+ */
+public class ArtifactPage {
+
+    private List<PlainArtifact> artifacts;
+    private String nextCursor;
+
+    public ArtifactPage() {
+    }
+
+    public ArtifactPage(List<PlainArtifact> artifacts, String nextCursor) {
+        this.artifacts = artifacts;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<PlainArtifact> getArtifacts() {
+        return artifacts;
+    }
+
+    public void setArtifacts(List<PlainArtifact> artifacts) {
+        this.artifacts = artifacts;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "ArtifactPage{" +
+                "artifacts=" + artifacts +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,201 @@
+package org.kie.cekit.cacher.objects;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * A queued, running or recently finished download and its progress
+ */
+@RegisterForReflection
+public class DownloadStatus {
+
+    public static final String QUEUED = "QUEUED";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    // another download of the same file name was running
+    public static final String SKIPPED = "SKIPPED";
+    public static final String FAILED = "FAILED";
+
+    private String fileName;
+    private String url;
+    private String host;
+    private String priority;
+    private String state;
+    private long enqueuedAt;
+    private long startedAt;
+    private long finishedAt;
+    private long bytesReceived;
+    // -1 when the upstream does not send the length
+    private long totalBytes;
+    private long bytesPerSecond;
+    // -1 when unknown
+    private long etaSeconds;
+    private String checksum;
+    private String error;
+    // attempts made, more than one when transient failures were retried
+    private int attempts;
+    // when a failed download is tried again, 0 if no retry is pending
+    private long retryAt;
+
+    public DownloadStatus() {
+    }
+
+    public DownloadStatus(String fileName, String url, String host, String priority, String state, long enqueuedAt, long startedAt) {
+        this.fileName = fileName;
+        this.url = url;
+        this.host = host;
+        this.priority = priority;
+        this.state = state;
+        this.enqueuedAt = enqueuedAt;
+        this.startedAt = startedAt;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(String priority) {
+        this.priority = priority;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    public void setEnqueuedAt(long enqueuedAt) {
+        this.enqueuedAt = enqueuedAt;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(long startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public void setBytesReceived(long bytesReceived) {
+        this.bytesReceived = bytesReceived;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    public void setEtaSeconds(long etaSeconds) {
+        this.etaSeconds = etaSeconds;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public long getRetryAt() {
+        return retryAt;
+    }
+
+    public void setRetryAt(long retryAt) {
+        this.retryAt = retryAt;
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadStatus{" +
+                "fileName='" + fileName + '\'' +
+                ", url='" + url + '\'' +
+                ", host='" + host + '\'' +
+                ", priority='" + priority + '\'' +
+                ", state='" + state + '\'' +
+                ", enqueuedAt=" + enqueuedAt +
+                ", startedAt=" + startedAt +
+                ", finishedAt=" + finishedAt +
+                ", bytesReceived=" + bytesReceived +
+                ", totalBytes=" + totalBytes +
+                ", bytesPerSecond=" + bytesPerSecond +
+                ", etaSeconds=" + etaSeconds +
+                ", checksum='" + checksum + '\'' +
+                ", error='" + error + '\'' +
+                ", attempts=" + attempts +
+                ", retryAt=" + retryAt +
+                '}';
+    }
+}
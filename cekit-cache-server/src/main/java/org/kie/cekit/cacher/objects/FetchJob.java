@@ -0,0 +1,102 @@
+package org.kie.cekit.cacher.objects;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+import java.util.List;
+
+/**
+ * Status of a batch of artifacts fetched in background
+ */
+@RegisterForReflection
+public class FetchJob {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+
+    private String id;
+    private String state;
+    private long createdAt;
+    private long finishedAt;
+    private int total;
+    private int completed;
+    private int failed;
+    private List<FetchJobItem> items;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(int completed) {
+        this.completed = completed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<FetchJobItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<FetchJobItem> items) {
+        this.items = items;
+    }
+
+    @Override
+    public String toString() {
+        return "FetchJob{" +
+                "id='" + id + '\'' +
+                ", state='" + state + '\'' +
+                ", createdAt=" + createdAt +
+                ", finishedAt=" + finishedAt +
+                ", total=" + total +
+                ", completed=" + completed +
+                ", failed=" + failed +
+                ", items=" + items +
+                '}';
+    }
+}
@@ -0,0 +1,82 @@
+package org.kie.cekit.cacher.objects;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * Status of a single artifact of a fetch job
+ */
+@RegisterForReflection
+public class FetchJobItem {
+
+    public static final String PENDING = "PENDING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    private String url;
+    private String expectedChecksum;
+    private String state = PENDING;
+    private String checksum;
+    private String message;
+
+    public FetchJobItem() {
+    }
+
+    public FetchJobItem(String url, String expectedChecksum) {
+        this.url = url;
+        this.expectedChecksum = expectedChecksum;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getExpectedChecksum() {
+        return expectedChecksum;
+    }
+
+    public void setExpectedChecksum(String expectedChecksum) {
+        this.expectedChecksum = expectedChecksum;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    /**
+     * @return md5 of the persisted artifact
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "FetchJobItem{" +
+                "url='" + url + '\'' +
+                ", expectedChecksum='" + expectedChecksum + '\'' +
+                ", state='" + state + '\'' +
+                ", checksum='" + checksum + '\'' +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
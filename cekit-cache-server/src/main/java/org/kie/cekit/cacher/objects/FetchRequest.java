@@ -0,0 +1,45 @@
+package org.kie.cekit.cacher.objects;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * An artifact to be fetched by a job, the checksum is optional and can be a md5, sha1 or sha256.
+ */
+@RegisterForReflection
+public class FetchRequest {
+
+    private String url;
+    private String checksum;
+
+    public FetchRequest() {
+    }
+
+    public FetchRequest(String url, String checksum) {
+        this.url = url;
+        this.checksum = checksum;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    @Override
+    public String toString() {
+        return "FetchRequest{" +
+                "url='" + url + '\'' +
+                ", checksum='" + checksum + '\'' +
+                '}';
+    }
+}
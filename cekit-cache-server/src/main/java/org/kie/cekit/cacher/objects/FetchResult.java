@@ -0,0 +1,106 @@
+package org.kie.cekit.cacher.objects;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * Outcome of an artifact fetch, shared by every caller waiting on the same download.
+ */
+@RegisterForReflection
+public class FetchResult {
+
+    public enum Status {
+        PERSISTED, ALREADY_EXISTS, IN_PROGRESS, FAILED
+    }
+
+    private String fileName;
+    private String checksum;
+    private Status status;
+    private String message;
+    // the failure is transient, i.e. a timeout or a server error, and the fetch can be tried again
+    private boolean retryable;
+
+    public FetchResult() {
+    }
+
+    public FetchResult(String fileName, String checksum, Status status, String message) {
+        this.fileName = fileName;
+        this.checksum = checksum;
+        this.status = status;
+        this.message = message;
+    }
+
+    public static FetchResult persisted(String fileName, String checksum) {
+        return new FetchResult(fileName, checksum, Status.PERSISTED, "File " + fileName + " persisted.");
+    }
+
+    public static FetchResult alreadyExists(String fileName, String checksum) {
+        return new FetchResult(fileName, checksum, Status.ALREADY_EXISTS, "File " + fileName + " already exists.");
+    }
+
+    public static FetchResult inProgress(String fileName) {
+        return new FetchResult(fileName, null, Status.IN_PROGRESS, "File " + fileName + " still being downloaded, skipping...");
+    }
+
+    public static FetchResult failed(String fileName, String message) {
+        return new FetchResult(fileName, null, Status.FAILED, message);
+    }
+
+    public static FetchResult failed(String fileName, String message, boolean retryable) {
+        FetchResult result = failed(fileName, message);
+        result.setRetryable(retryable);
+        return result;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * @return md5 of the persisted artifact, null if the fetch did not complete
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    public void setRetryable(boolean retryable) {
+        this.retryable = retryable;
+    }
+
+    @Override
+    public String toString() {
+        return "FetchResult{" +
+                "fileName='" + fileName + '\'' +
+                ", checksum='" + checksum + '\'' +
+                ", status=" + status +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
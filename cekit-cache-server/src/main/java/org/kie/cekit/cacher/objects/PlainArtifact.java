@@ -7,6 +7,7 @@ public class PlainArtifact {
     private String buildDate;
     private String version;
     private String branch;
+    private long size;
 
     public PlainArtifact() {
     }
@@ -62,6 +63,14 @@ public class PlainArtifact {
         this.branch = branch;
     }
 
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
     @Override
     public String toString() {
         return "PlainArtifact{" +
@@ -70,6 +79,7 @@ public class PlainArtifact {
                 ", buildDate='" + buildDate + '\'' +
                 ", version='" + version + '\'' +
                 ", branch='" + branch + '\'' +
+                ", size=" + size +
                 '}';
     }
 }
@@ -0,0 +1,117 @@
+package org.kie.cekit.cacher.objects;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+import java.util.Map;
+
+/**
+ * Artifacts being served and the counters of the serving limits
+ */
+@RegisterForReflection
+public class ServingStatus {
+
+    private int activeTransfers;
+    private int maxTransfers;
+    private int maxPerClient;
+    // client address -> artifacts being sent to it
+    private Map<String, Integer> clients;
+    private long accepted;
+    // rejected because all the transfer slots were taken
+    private long rejectedBusy;
+    // rejected because the client had too many transfers
+    private long rejectedClient;
+    // requests accepted per second, 0 if unlimited
+    private long maxRequestRate;
+    // rejected because of the request rate
+    private long rejectedRate;
+
+    public ServingStatus() {
+    }
+
+    public int getActiveTransfers() {
+        return activeTransfers;
+    }
+
+    public void setActiveTransfers(int activeTransfers) {
+        this.activeTransfers = activeTransfers;
+    }
+
+    public int getMaxTransfers() {
+        return maxTransfers;
+    }
+
+    public void setMaxTransfers(int maxTransfers) {
+        this.maxTransfers = maxTransfers;
+    }
+
+    public int getMaxPerClient() {
+        return maxPerClient;
+    }
+
+    public void setMaxPerClient(int maxPerClient) {
+        this.maxPerClient = maxPerClient;
+    }
+
+    public Map<String, Integer> getClients() {
+        return clients;
+    }
+
+    public void setClients(Map<String, Integer> clients) {
+        this.clients = clients;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public void setAccepted(long accepted) {
+        this.accepted = accepted;
+    }
+
+    public long getRejectedBusy() {
+        return rejectedBusy;
+    }
+
+    public void setRejectedBusy(long rejectedBusy) {
+        this.rejectedBusy = rejectedBusy;
+    }
+
+    public long getRejectedClient() {
+        return rejectedClient;
+    }
+
+    public void setRejectedClient(long rejectedClient) {
+        this.rejectedClient = rejectedClient;
+    }
+
+    public long getMaxRequestRate() {
+        return maxRequestRate;
+    }
+
+    public void setMaxRequestRate(long maxRequestRate) {
+        this.maxRequestRate = maxRequestRate;
+    }
+
+    public long getRejectedRate() {
+        return rejectedRate;
+    }
+
+    public void setRejectedRate(long rejectedRate) {
+        this.rejectedRate = rejectedRate;
+    }
+
+    @Override
+    public String toString() {
+        return "ServingStatus{" +
+                "activeTransfers=" + activeTransfers +
+                ", maxTransfers=" + maxTransfers +
+                ", maxPerClient=" + maxPerClient +
+                ", clients=" + clients +
+                ", accepted=" + accepted +
+                ", rejectedBusy=" + rejectedBusy +
+                ", rejectedClient=" + rejectedClient +
+                ", maxRequestRate=" + maxRequestRate +
+                ", rejectedRate=" + rejectedRate +
+                '}';
+    }
+}
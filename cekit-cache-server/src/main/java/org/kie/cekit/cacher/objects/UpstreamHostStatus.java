@@ -0,0 +1,140 @@
+package org.kie.cekit.cacher.objects;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * Circuit breaker state and retry counters of an upstream host
+ */
+@RegisterForReflection
+public class UpstreamHostStatus {
+
+    private String host;
+    // CLOSED, OPEN or HALF_OPEN
+    private String state;
+    private int consecutiveFailures;
+    // when the open circuit lets a trial download through, 0 if not open
+    private long openUntil;
+    private long attempts;
+    private long retries;
+    private long successes;
+    // transient failures
+    private long failures;
+    // downloads not tried because the circuit was open
+    private long rejected;
+    // how many times the circuit opened
+    private long opened;
+    private String lastError;
+
+    public UpstreamHostStatus() {
+    }
+
+    public UpstreamHostStatus(String host, String state) {
+        this.host = host;
+        this.state = state;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public void setConsecutiveFailures(int consecutiveFailures) {
+        this.consecutiveFailures = consecutiveFailures;
+    }
+
+    public long getOpenUntil() {
+        return openUntil;
+    }
+
+    public void setOpenUntil(long openUntil) {
+        this.openUntil = openUntil;
+    }
+
+    public long getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(long attempts) {
+        this.attempts = attempts;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    public void setRetries(long retries) {
+        this.retries = retries;
+    }
+
+    public long getSuccesses() {
+        return successes;
+    }
+
+    public void setSuccesses(long successes) {
+        this.successes = successes;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(long failures) {
+        this.failures = failures;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public long getOpened() {
+        return opened;
+    }
+
+    public void setOpened(long opened) {
+        this.opened = opened;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    @Override
+    public String toString() {
+        return "UpstreamHostStatus{" +
+                "host='" + host + '\'' +
+                ", state='" + state + '\'' +
+                ", consecutiveFailures=" + consecutiveFailures +
+                ", openUntil=" + openUntil +
+                ", attempts=" + attempts +
+                ", retries=" + retries +
+                ", successes=" + successes +
+                ", failures=" + failures +
+                ", rejected=" + rejected +
+                ", opened=" + opened +
+                ", lastError='" + lastError + '\'' +
+                '}';
+    }
+}
@@ -1,12 +1,20 @@
 package org.kie.cekit.cacher.properties;
 
 import org.kie.cekit.cacher.exception.RequiredParameterMissingException;
+import org.kie.cekit.cacher.http.Destination;
 import org.kie.cekit.cacher.properties.loader.CacherProperty;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 /**
  * Holds all cacher's configurations
@@ -14,6 +22,10 @@ import java.util.List;
 @ApplicationScoped
 public class CacherProperties {
 
+    private static final String ANY_HOST = "";
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
     @Inject
     @CacherProperty(name = "org.kie.cekit.cacher.base.dir", required = true)
     String cacherDataDir;
@@ -74,6 +86,146 @@ public class CacherProperties {
     @CacherProperty(name = "org.kie.cekit.cacher.preload.file")
     String preLoadFileLocation;
 
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.max.concurrent")
+    String downloadMaxConcurrent;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.max.per.host")
+    String downloadMaxPerHost;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.segments")
+    String downloadSegments;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.segment.size")
+    String downloadSegmentSize;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.mirrors")
+    String downloadMirrors;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.retry.attempts")
+    String downloadRetryAttempts;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.retry.delay")
+    String downloadRetryDelay;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.breaker.failures")
+    String downloadBreakerFailures;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.breaker.open")
+    String downloadBreakerOpen;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.wait")
+    String downloadWait;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.artifacts.connect.timeout")
+    String httpArtifactsConnectTimeout;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.artifacts.read.timeout")
+    String httpArtifactsReadTimeout;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.artifacts.call.timeout")
+    String httpArtifactsCallTimeout;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.builds.connect.timeout")
+    String httpBuildsConnectTimeout;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.builds.read.timeout")
+    String httpBuildsReadTimeout;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.builds.call.timeout")
+    String httpBuildsCallTimeout;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.webhook.connect.timeout")
+    String httpWebhookConnectTimeout;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.webhook.read.timeout")
+    String httpWebhookReadTimeout;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.webhook.call.timeout")
+    String httpWebhookCallTimeout;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.github.connect.timeout")
+    String httpGithubConnectTimeout;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.github.read.timeout")
+    String httpGithubReadTimeout;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.github.call.timeout")
+    String httpGithubCallTimeout;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.bandwidth")
+    String downloadBandwidth;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.bandwidth.capacity")
+    String bandwidthCapacity;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.serving.share")
+    String servingShare;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.serving.max.transfers")
+    String servingMaxTransfers;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.serving.max.per.client")
+    String servingMaxPerClient;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.serving.retry.after")
+    String servingRetryAfter;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.serving.rate")
+    String servingRate;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.artifacts.quota")
+    String artifactsQuota;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.artifacts.quota.high")
+    String artifactsQuotaHigh;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.artifacts.quota.low")
+    String artifactsQuotaLow;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.artifacts.eviction")
+    String artifactsEviction;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.nightly.retention.builds")
+    String nightlyRetentionBuilds;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.nightly.retention.purge.rate")
+    String nightlyRetentionPurgeRate;
+
 
     /**
      * RHPAM properties keys needed to download the nighlty builds artifacts
@@ -235,6 +387,255 @@ public class CacherProperties {
         return preLoadFileLocation;
     }
 
+    /**
+     * @return how many downloads can run at the same time, defaults to 4
+     */
+    public int downloadMaxConcurrent() {
+        return positiveInt("org.kie.cekit.cacher.download.max.concurrent", downloadMaxConcurrent, 4);
+    }
+
+    /**
+     * The per host limit is a number optionally followed by per host overrides, i.e. 2,download.example.com=4
+     *
+     * @return how many downloads can run at the same time against a single host, defaults to 2
+     */
+    public int downloadMaxPerHost() {
+        return perHost("org.kie.cekit.cacher.download.max.per.host", downloadMaxPerHost, 2).get(ANY_HOST);
+    }
+
+    /**
+     * @return per host download limits that override {@link #downloadMaxPerHost()}
+     */
+    public Map<String, Integer> downloadMaxPerHostOverrides() {
+        Map<String, Integer> overrides = perHost("org.kie.cekit.cacher.download.max.per.host", downloadMaxPerHost, 2);
+        overrides.remove(ANY_HOST);
+        return overrides;
+    }
+
+    /**
+     * Large artifacts are split in ranges fetched in parallel, accepts per host overrides, i.e. 4,slow.example.com=1
+     *
+     * @param host
+     * @return how many ranges of a single artifact are fetched at the same time, defaults to 4, 1 disables it
+     */
+    public int downloadSegments(String host) {
+        return forHost(perHost("org.kie.cekit.cacher.download.segments", downloadSegments, 4), host);
+    }
+
+    /**
+     * Only artifacts of at least two segments are split, accepts per host overrides, i.e. 32,fast.example.com=128
+     *
+     * @param host
+     * @return size in bytes of each range of a segmented download, configured in MB, defaults to 32MB
+     */
+    public long downloadSegmentSize(String host) {
+        return forHost(perHost("org.kie.cekit.cacher.download.segment.size", downloadSegmentSize, 32), host) * 1024L * 1024L;
+    }
+
+    /**
+     * Mirror groups are separated by semicolons, each one lists the equivalent base urls separated by commas,
+     * i.e. http://a.example.com/builds,http://b.example.com/builds;http://c.example.com/files,http://d.example.com/files
+     *
+     * @return mirror groups, each one with the base urls ending with a slash
+     */
+    public List<List<String>> downloadMirrors() {
+        List<List<String>> groups = new ArrayList<>();
+        if (null == downloadMirrors) {
+            return groups;
+        }
+        for (String group : downloadMirrors.split(";")) {
+            List<String> bases = Arrays.stream(group.split(","))
+                    .map(String::trim)
+                    .filter(base -> !base.isEmpty())
+                    .map(base -> base.endsWith("/") ? base : base + "/")
+                    .collect(Collectors.toList());
+            if (bases.size() > 1) {
+                groups.add(bases);
+            } else if (!bases.isEmpty()) {
+                log.warning("Ignoring mirror group " + group + " of org.kie.cekit.cacher.download.mirrors, it needs at least two urls.");
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * @return how many times a download failing with a transient error is tried, defaults to 4, 1 disables retries
+     */
+    public int downloadRetryAttempts() {
+        return positiveInt("org.kie.cekit.cacher.download.retry.attempts", downloadRetryAttempts, 4);
+    }
+
+    /**
+     * @return base delay in milliseconds before retrying a download, configured in seconds, defaults to 5 seconds.
+     * It doubles on every attempt.
+     */
+    public long downloadRetryDelay() {
+        return positiveInt("org.kie.cekit.cacher.download.retry.delay", downloadRetryDelay, 5) * 1000L;
+    }
+
+    /**
+     * @return consecutive transient failures against a host after which its downloads are stopped, defaults to 5
+     */
+    public int downloadBreakerFailures() {
+        return positiveInt("org.kie.cekit.cacher.download.breaker.failures", downloadBreakerFailures, 5);
+    }
+
+    /**
+     * @return how long in milliseconds no download is tried against a failing host, configured in seconds,
+     * defaults to 60 seconds
+     */
+    public long downloadBreakerOpen() {
+        return positiveInt("org.kie.cekit.cacher.download.breaker.open", downloadBreakerOpen, 60) * 1000L;
+    }
+
+    /**
+     * @return how long in milliseconds a request waits for the fetch of an artifact already in progress,
+     * configured in seconds, defaults to 60 seconds
+     */
+    public long downloadWait() {
+        return positiveInt("org.kie.cekit.cacher.download.wait", downloadWait, 60) * 1000L;
+    }
+
+    /**
+     * @return connect timeout in seconds of the given destination, i.e. org.kie.cekit.cacher.http.artifacts.connect.timeout,
+     * defaults to the timeout of the {@link Destination}
+     */
+    public long httpConnectTimeout(Destination destination) {
+        return positiveInt(httpProperty(destination, "connect"),
+                           forDestination(destination, httpArtifactsConnectTimeout, httpBuildsConnectTimeout, httpWebhookConnectTimeout, httpGithubConnectTimeout),
+                           (int) destination.connectTimeout(TimeUnit.SECONDS));
+    }
+
+    /**
+     * @return read and write timeout in seconds of the given destination, defaults to the timeout of the {@link Destination}
+     */
+    public long httpReadTimeout(Destination destination) {
+        return positiveInt(httpProperty(destination, "read"),
+                           forDestination(destination, httpArtifactsReadTimeout, httpBuildsReadTimeout, httpWebhookReadTimeout, httpGithubReadTimeout),
+                           (int) destination.readTimeout(TimeUnit.SECONDS));
+    }
+
+    /**
+     * @return whole call timeout in seconds of the given destination, defaults to the timeout of the {@link Destination},
+     * 0 meaning no timeout
+     */
+    public long httpCallTimeout(Destination destination) {
+        return positiveInt(httpProperty(destination, "call"),
+                           forDestination(destination, httpArtifactsCallTimeout, httpBuildsCallTimeout, httpWebhookCallTimeout, httpGithubCallTimeout),
+                           (int) destination.callTimeout(TimeUnit.SECONDS));
+    }
+
+    /**
+     * The limit of all downloads together can be followed by limits per download class, i.e. 40,nightly=20,preload=5
+     *
+     * @return download bandwidth limit in bytes per second, configured in MB per second, 0 if unlimited
+     */
+    public long downloadBandwidth() {
+        return perHost("org.kie.cekit.cacher.download.bandwidth", downloadBandwidth, 0).get(ANY_HOST) * 1024L * 1024L;
+    }
+
+    /**
+     * @param downloadClass the name of a {@link org.kie.cekit.cacher.downloads.DownloadPriority}
+     * @return download bandwidth limit of the given class in bytes per second, 0 if unlimited
+     */
+    public long downloadBandwidth(String downloadClass) {
+        return perHost("org.kie.cekit.cacher.download.bandwidth", downloadBandwidth, 0)
+                .getOrDefault(downloadClass.toLowerCase(), 0) * 1024L * 1024L;
+    }
+
+    /**
+     * @return network or disk throughput available to the cacher in bytes per second, configured in MB per second,
+     * 0 if unknown
+     */
+    public long bandwidthCapacity() {
+        return positiveInt("org.kie.cekit.cacher.bandwidth.capacity", bandwidthCapacity, 0) * 1024L * 1024L;
+    }
+
+    /**
+     * @return percentage of the bandwidth capacity reserved to serve artifacts while they are being served,
+     * defaults to 50
+     */
+    public int servingShare() {
+        return Math.min(100, positiveInt("org.kie.cekit.cacher.serving.share", servingShare, 50));
+    }
+
+    /**
+     * @return how many artifacts can be sent at the same time to all clients, defaults to 200
+     */
+    public int servingMaxTransfers() {
+        return positiveInt("org.kie.cekit.cacher.serving.max.transfers", servingMaxTransfers, 200);
+    }
+
+    /**
+     * @return how many artifacts can be sent at the same time to a single client address, defaults to 16
+     */
+    public int servingMaxPerClient() {
+        return positiveInt("org.kie.cekit.cacher.serving.max.per.client", servingMaxPerClient, 16);
+    }
+
+    /**
+     * @return seconds a client over the serving limits is asked to wait, defaults to 10
+     */
+    public int servingRetryAfter() {
+        return positiveInt("org.kie.cekit.cacher.serving.retry.after", servingRetryAfter, 10);
+    }
+
+    /**
+     * @return how many requests to serve artifacts are accepted per second from all clients, 0 if unlimited
+     */
+    public int servingRate() {
+        return positiveInt("org.kie.cekit.cacher.serving.rate", servingRate, 0);
+    }
+
+    /**
+     * @return size the artifacts can take on disk in bytes, configured in MB, 0 if there is no quota
+     */
+    public long artifactsQuota() {
+        return positiveInt("org.kie.cekit.cacher.artifacts.quota", artifactsQuota, 0) * 1024L * 1024L;
+    }
+
+    /**
+     * @return percentage of the quota that starts the eviction, defaults to 90
+     */
+    public int artifactsQuotaHigh() {
+        return Math.min(100, positiveInt("org.kie.cekit.cacher.artifacts.quota.high", artifactsQuotaHigh, 90));
+    }
+
+    /**
+     * @return percentage of the quota the eviction brings the usage down to, defaults to 80
+     */
+    public int artifactsQuotaLow() {
+        return Math.min(artifactsQuotaHigh(), positiveInt("org.kie.cekit.cacher.artifacts.quota.low", artifactsQuotaLow, 80));
+    }
+
+    /**
+     * @return true if the least frequently used artifacts are evicted first, by default the least recently used are
+     */
+    public boolean artifactsEvictionLfu() {
+        if (null == artifactsEviction || artifactsEviction.trim().isEmpty() || "lru".equalsIgnoreCase(artifactsEviction.trim())) {
+            return false;
+        }
+        if ("lfu".equalsIgnoreCase(artifactsEviction.trim())) {
+            return true;
+        }
+        log.warning("Invalid value " + artifactsEviction + " for org.kie.cekit.cacher.artifacts.eviction, using lru.");
+        return false;
+    }
+
+    /**
+     * @return nightly builds kept for each version and branch, 0 if all of them are kept
+     */
+    public int nightlyRetentionBuilds() {
+        return positiveInt("org.kie.cekit.cacher.nightly.retention.builds", nightlyRetentionBuilds, 0);
+    }
+
+    /**
+     * @return bytes per second of expired nightly build artifacts removed, configured in MB per second, defaults to 50
+     */
+    public long nightlyRetentionPurgeRate() {
+        return positiveInt("org.kie.cekit.cacher.nightly.retention.purge.rate", nightlyRetentionPurgeRate, 50) * 1024L * 1024L;
+    }
+
     /**
      * @return cacher artifacts dir location
      */
@@ -282,4 +683,61 @@ public class CacherProperties {
     public List<String> getRhdmFiles2DownloadPropName() {
         return rhdmFiles2DownloadPropName;
     }
+
+    /**
+     * Parses a default value followed by per host overrides, i.e. 2,download.example.com=4
+     * The default is kept under the {@link #ANY_HOST} key.
+     */
+    private Map<String, Integer> perHost(String name, String value, int defaultValue) {
+        Map<String, Integer> values = new HashMap<>();
+        values.put(ANY_HOST, defaultValue);
+        if (null != value) {
+            for (String entry : value.split(",")) {
+                String[] hostValue = entry.split("=");
+                if (hostValue.length == 2) {
+                    values.put(hostValue[0].trim().toLowerCase(), positiveInt(name, hostValue[1], defaultValue));
+                } else if (!entry.trim().isEmpty()) {
+                    values.put(ANY_HOST, positiveInt(name, entry, defaultValue));
+                }
+            }
+        }
+        return values;
+    }
+
+    private int forHost(Map<String, Integer> values, String host) {
+        return values.getOrDefault(null == host ? ANY_HOST : host.toLowerCase(), values.get(ANY_HOST));
+    }
+
+    private String httpProperty(Destination destination, String timeout) {
+        return "org.kie.cekit.cacher.http." + destination.propertyName() + "." + timeout + ".timeout";
+    }
+
+    private String forDestination(Destination destination, String artifacts, String builds, String webhook, String github) {
+        switch (destination) {
+            case ARTIFACTS:
+                return artifacts;
+            case BUILDS:
+                return builds;
+            case WEBHOOK:
+                return webhook;
+            default:
+                return github;
+        }
+    }
+
+    private int positiveInt(String name, String value, int defaultValue) {
+        if (null == value || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        log.warning("Invalid value " + value + " for " + name + ", using " + defaultValue + ".");
+        return defaultValue;
+    }
 }
@@ -0,0 +1,339 @@
+package org.kie.cekit.cacher.resources;
+
+import io.undertow.servlet.handlers.ServletRequestContext;
+import io.undertow.servlet.spec.ServletOutputStreamImpl;
+import org.jboss.resteasy.util.DateUtil;
+import org.kie.cekit.cacher.bandwidth.BandwidthShaper;
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Sends persisted artifacts, whole or in byte ranges, honoring the conditional request headers.
+ * The ETag of an artifact is its md5 checksum.
+ * <p>
+ * When the artifact is sent up to its end, i.e. whole or resumed from an offset, the file is handed to the
+ * server, which sends it with sendfile without copying it through user space. Other ranges are copied.
+ * <p>
+ * The servlet api has no zero copy transfer, sendfile relies on Undertow's {@link ServletOutputStreamImpl#transferFrom}.
+ * On another container the artifacts are copied, which is logged once. The transfers are blocking, each one holds a
+ * worker thread until it ends, the serving limits bound how many run at once.
+ */
+@ApplicationScoped
+public class ArtifactSender {
+
+    static final String TAR = "application/x-tar";
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final AtomicBoolean copyLogged = new AtomicBoolean();
+    private final AtomicLong sendfileTransfers = new AtomicLong();
+
+    @Inject
+    BandwidthShaper bandwidthShaper;
+
+    /**
+     * @return the headers of the artifact, from the index only
+     */
+    public Response head(Path file, ArtifactMetadata artifact) throws IOException {
+        // committed before closing, a response with nothing written would be sent with a zero length
+        StreamingOutput nothing = OutputStream::flush;
+        return headers(Response.ok(nothing, MediaType.APPLICATION_OCTET_STREAM_TYPE), file, artifact)
+                .header("Content-Length", sizeOf(file, artifact))
+                .build();
+    }
+
+    /**
+     * @param file             the artifact file
+     * @param artifact         its metadata
+     * @param request          to evaluate If-None-Match, If-Modified-Since and the other preconditions
+     * @param range            Range header, can be null
+     * @param ifRange          If-Range header, can be null
+     * @param servletResponse  used to hand the file to the server, can be null
+     */
+    public Response send(Path file, ArtifactMetadata artifact, Request request, String range, String ifRange,
+                         HttpServletResponse servletResponse) throws IOException {
+        EntityTag etag = new EntityTag(artifact.getChecksum());
+        Date lastModified = lastModifiedOf(file, artifact);
+        Response.ResponseBuilder precondition = request.evaluatePreconditions(lastModified, etag);
+        if (null != precondition) {
+            return precondition.tag(etag).build();
+        }
+
+        long size = sizeOf(file, artifact);
+        List<ByteRange> ranges = null == ifRange || matches(ifRange, etag, lastModified) ? ByteRange.parse(range, size) : null;
+        if (null == ranges) {
+            return headers(Response.ok(), file, artifact)
+                    .header("Content-Length", size)
+                    .entity(output(output -> transfer(file, new ByteRange(0, size - 1), output, servletResponse)))
+                    .build();
+        }
+        if (ranges.isEmpty()) {
+            return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header("Content-Range", "bytes */" + size)
+                    .build();
+        }
+        if (ranges.size() == 1) {
+            ByteRange single = ranges.get(0);
+            return headers(Response.status(Response.Status.PARTIAL_CONTENT), file, artifact)
+                    .header("Content-Range", single.contentRange(size))
+                    .header("Content-Length", single.length())
+                    .entity(output(output -> transfer(file, single, output, servletResponse)))
+                    .build();
+        }
+        return multipart(file, artifact, ranges, size);
+    }
+
+    /**
+     * Sends the ranges as multipart/byteranges, each part with its own Content-Range.
+     */
+    private Response multipart(Path file, ArtifactMetadata artifact, List<ByteRange> ranges, long size) throws IOException {
+        String boundary = UUID.randomUUID().toString();
+        byte[][] partHeaders = new byte[ranges.size()][];
+        long length = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            partHeaders[i] = ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + MediaType.APPLICATION_OCTET_STREAM + "\r\n"
+                    + "Content-Range: " + ranges.get(i).contentRange(size) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            length += partHeaders[i].length + ranges.get(i).length();
+        }
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        length += end.length;
+
+        return headers(Response.status(Response.Status.PARTIAL_CONTENT), file, artifact)
+                .type("multipart/byteranges; boundary=" + boundary)
+                .header("Content-Length", length)
+                .entity(output(output -> {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        for (int i = 0; i < ranges.size(); i++) {
+                            output.write(partHeaders[i]);
+                            copy(channel, ranges.get(i), output);
+                        }
+                    }
+                    output.write(end);
+                }))
+                .build();
+    }
+
+    /**
+     * Streams the given artifacts as a tar assembled on the fly, each artifact under its checksum directory as in
+     * the artifacts directory. The artifacts are handed to the server one after the other, nothing is staged.
+     * Every file is opened before the response starts and kept open until it ends, so an artifact removed meanwhile
+     * is still sent whole.
+     *
+     * @param artifacts       the artifacts to bundle
+     * @param pathOf          where each artifact is persisted
+     * @param fileName        name of the tar sent to the client
+     * @param servletResponse used to hand the files to the server, can be null
+     * @return the tar, 404 naming the artifacts whose file is gone
+     */
+    public Response bundle(List<ArtifactMetadata> artifacts, Function<ArtifactMetadata, Path> pathOf, String fileName,
+                           HttpServletResponse servletResponse) throws IOException {
+        List<FileChannel> channels = new ArrayList<>();
+        List<TarEntry> entries = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        long length = TarEntry.END.length;
+        try {
+            for (ArtifactMetadata artifact : artifacts) {
+                Path file = pathOf.apply(artifact);
+                try {
+                    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                    channels.add(channel);
+                    TarEntry entry = new TarEntry(artifact.getChecksum(), artifact.getFileName(), channel.size(),
+                                                  lastModifiedOf(file, artifact).getTime());
+                    entries.add(entry);
+                    length += entry.length();
+                } catch (NoSuchFileException e) {
+                    missing.add(artifact.getFileName() + " (" + artifact.getChecksum() + ")");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            close(channels);
+            throw e;
+        }
+        if (!missing.isEmpty()) {
+            close(channels);
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("Artifacts files not found: " + String.join(", ", missing))
+                    .type(MediaType.TEXT_PLAIN)
+                    .build();
+        }
+        // closed once the exchange ends too, in case the response is never written
+        ServletRequestContext context = ServletRequestContext.current();
+        if (null != context) {
+            context.getExchange().addExchangeCompleteListener((exchange, next) -> {
+                close(channels);
+                next.proceed();
+            });
+        }
+        return Response.ok(output(output -> {
+            try {
+                for (int i = 0; i < entries.size(); i++) {
+                    TarEntry entry = entries.get(i);
+                    output.write(entry.headers());
+                    // the length announced on the header is sent even if the file changed since
+                    if (entry.size() > 0) {
+                        transfer(channels.get(i), new ByteRange(0, entry.size() - 1), output, servletResponse);
+                    }
+                    output.write(entry.padding());
+                }
+                output.write(TarEntry.END);
+            } finally {
+                close(channels);
+            }
+        }), TAR)
+                .header("Content-Length", length)
+                .header("Content-Disposition", "attachment;filename=" + fileName)
+                .build();
+    }
+
+    /**
+     * @return how many transfers were handed to the server, the others were copied
+     */
+    long sendfileTransfers() {
+        return sendfileTransfers.get();
+    }
+
+    private Response.ResponseBuilder headers(Response.ResponseBuilder response, Path file, ArtifactMetadata artifact) throws IOException {
+        return response
+                .type(MediaType.APPLICATION_OCTET_STREAM_TYPE)
+                .tag(new EntityTag(artifact.getChecksum()))
+                .lastModified(lastModifiedOf(file, artifact))
+                .header("Accept-Ranges", "bytes")
+                .header("Content-Disposition", "attachment;filename=" + artifact.getFileName());
+    }
+
+    /**
+     * Serving an artifact holds the downloads back to their share of the bandwidth
+     */
+    private StreamingOutput output(StreamingOutput body) {
+        return output -> {
+            bandwidthShaper.servingStarted();
+            try {
+                body.write(output);
+            } finally {
+                bandwidthShaper.servingFinished();
+            }
+        };
+    }
+
+    private void transfer(Path file, ByteRange range, OutputStream output, HttpServletResponse servletResponse) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(channel, range, output, servletResponse);
+        }
+    }
+
+    private void transfer(FileChannel channel, ByteRange range, OutputStream output, HttpServletResponse servletResponse) throws IOException {
+        if (range.end == channel.size() - 1 && sendfile(channel.position(range.start), output, servletResponse)) {
+            return;
+        }
+        copy(channel, range, output);
+    }
+
+    private static void close(List<FileChannel> channels) {
+        for (FileChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Hands the rest of the file, from its position, to the server
+     *
+     * @return false if the server output does not support it
+     */
+    private boolean sendfile(FileChannel channel, OutputStream output, HttpServletResponse servletResponse) throws IOException {
+        if (null == servletResponse) {
+            return false;
+        }
+        ServletOutputStream target = servletResponse.getOutputStream();
+        if (!(target instanceof ServletOutputStreamImpl)) {
+            if (copyLogged.compareAndSet(false, true)) {
+                log.warning("The server output " + target.getClass().getName() + " is not Undertow's, artifacts are copied instead of sent with sendfile.");
+            }
+            return false;
+        }
+        // the status and headers are set on the first write or flush of the jax-rs output, which is then bypassed
+        output.flush();
+        // an encoded response has to go through the jax-rs output
+        if (null != servletResponse.getHeader("Content-Encoding")) {
+            return false;
+        }
+        ((ServletOutputStreamImpl) target).transferFrom(channel);
+        sendfileTransfers.incrementAndGet();
+        return true;
+    }
+
+    private void copy(FileChannel channel, ByteRange range, OutputStream output) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(1, range.length())));
+        long position = range.start;
+        while (position <= range.end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), range.end - position + 1));
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                throw new IOException("Artifact truncated at " + position);
+            }
+            output.write(buffer.array(), 0, read);
+            position += read;
+        }
+    }
+
+    /**
+     * @return true if the If-Range header matches the current artifact, strong comparison for the ETag
+     */
+    private boolean matches(String ifRange, EntityTag etag, Date lastModified) {
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return value.equals("\"" + etag.getValue() + "\"");
+        }
+        try {
+            return DateUtil.parseDate(value).getTime() == lastModified.getTime();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private long sizeOf(Path file, ArtifactMetadata artifact) throws IOException {
+        return artifact.getSize() > 0 ? artifact.getSize() : Files.size(file);
+    }
+
+    /**
+     * @return last modification truncated to seconds, as sent on the headers
+     */
+    private Date lastModifiedOf(Path file, ArtifactMetadata artifact) throws IOException {
+        long millis = artifact.getLastModified() > 0 ? artifact.getLastModified() : Files.getLastModifiedTime(file).toMillis();
+        return new Date(TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(millis)));
+    }
+}
@@ -0,0 +1,117 @@
+package org.kie.cekit.cacher.resources;
+
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.artifacts.ArtifactQuery;
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.BeanParam;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Sends many artifacts in a single tar, so a build host can warm its cache in one connection.
+ */
+@ServingLimited
+@Path("/resource/bundle")
+public class BundleResource {
+
+    private static final int MAX_ARTIFACTS = 1000;
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    ArtifactSender artifactSender;
+
+    /**
+     * @param checksums md5, sha1 or sha256 of the artifacts to bundle
+     * @return the tar of the artifacts, 404 naming the missing checksums if any is not available
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(ArtifactSender.TAR)
+    public Response bundleChecksums(List<String> checksums, @Context HttpServletResponse servletResponse) throws IOException {
+        if (null == checksums || checksums.isEmpty() || checksums.size() > MAX_ARTIFACTS) {
+            return badRequest("Expected from 1 to " + MAX_ARTIFACTS + " checksums.");
+        }
+        // by md5, an artifact listed by more than one of its checksums is sent once
+        Map<String, ArtifactMetadata> artifacts = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String checksum : checksums) {
+            Optional<ArtifactMetadata> artifact = artifactIndex.get(checksum);
+            if (artifact.isPresent()) {
+                artifacts.putIfAbsent(artifact.get().getChecksum(), artifact.get());
+            } else {
+                missing.add(checksum);
+            }
+        }
+        if (!missing.isEmpty()) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("Artifacts not available: " + String.join(", ", missing))
+                    .type(MediaType.TEXT_PLAIN)
+                    .build();
+        }
+        return send(new ArrayList<>(artifacts.values()), "artifacts.tar", servletResponse);
+    }
+
+    /**
+     * Bundles the artifacts matching the name prefix, version, branch and build date filters of the listing,
+     * at least one of them is required.
+     */
+    @GET
+    @Produces(ArtifactSender.TAR)
+    public Response bundleQuery(@BeanParam ListingParams params, @Context HttpServletResponse servletResponse) throws IOException {
+        ArtifactQuery query = params.toQuery();
+        if (null == query.getNamePrefix() && !query.hasSecondaryFilters()) {
+            return badRequest("Expected at least one of the name, version, branch and buildDate filters.");
+        }
+        List<ArtifactMetadata> artifacts = artifactIndex.query(query).limit(MAX_ARTIFACTS + 1).collect(Collectors.toList());
+        if (artifacts.isEmpty()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if (artifacts.size() > MAX_ARTIFACTS) {
+            return badRequest("More than " + MAX_ARTIFACTS + " artifacts match, narrow the filters.");
+        }
+        String name = String.join("-", nonNull(query.getNamePrefix(), query.getVersion(), query.getBranch(), query.getBuildDate()));
+        return send(artifacts, name.replaceAll("[^A-Za-z0-9._-]", "_") + ".tar", servletResponse);
+    }
+
+    private Response send(List<ArtifactMetadata> artifacts, String fileName, HttpServletResponse servletResponse) throws IOException {
+        log.info("Bundling " + artifacts.size() + " artifacts in " + fileName);
+        artifacts.forEach(artifact -> artifactIndex.touch(artifact.getChecksum()));
+        return artifactSender.bundle(artifacts, artifactIndex::pathOf, fileName, servletResponse);
+    }
+
+    private static List<String> nonNull(String... values) {
+        List<String> present = new ArrayList<>();
+        for (String value : values) {
+            if (null != value) {
+                present.add(value);
+            }
+        }
+        return present;
+    }
+
+    private Response badRequest(String message) {
+        return Response.status(Response.Status.BAD_REQUEST).entity(message).type(MediaType.TEXT_PLAIN).build();
+    }
+}
@@ -0,0 +1,77 @@
+package org.kie.cekit.cacher.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A range of bytes requested with the Range header, both ends inclusive.
+ */
+class ByteRange {
+
+    // more ranges than this are answered with the whole artifact
+    static final int MAX_RANGES = 16;
+
+    final long start;
+    final long end;
+
+    ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    long length() {
+        return end - start + 1;
+    }
+
+    String contentRange(long size) {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+
+    /**
+     * Parses a Range header, i.e. bytes=0-499,1000-,-500
+     *
+     * @param header Range header value
+     * @param size   artifact length
+     * @return the satisfiable ranges clipped to the artifact length, empty if none is satisfiable,
+     * null if the header is missing or invalid and the whole artifact has to be sent
+     */
+    static List<ByteRange> parse(String header, long size) {
+        if (null == header || !header.trim().startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.trim().substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>();
+        try {
+            for (String spec : specs) {
+                String[] bounds = spec.trim().split("-", -1);
+                if (bounds.length != 2) {
+                    return null;
+                }
+                String first = bounds[0].trim();
+                String last = bounds[1].trim();
+                if (first.isEmpty()) {
+                    // suffix range, the last bytes
+                    long suffix = Long.parseLong(last);
+                    if (suffix > 0 && size > 0) {
+                        ranges.add(new ByteRange(Math.max(0, size - suffix), size - 1));
+                    }
+                    continue;
+                }
+                long start = Long.parseLong(first);
+                long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (start < 0 || end < start) {
+                    return null;
+                }
+                if (start < size) {
+                    ranges.add(new ByteRange(start, Math.min(end, size - 1)));
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return ranges;
+    }
+}
@@ -1,32 +1,97 @@
 package org.kie.cekit.cacher.resources;
 
+import io.undertow.servlet.handlers.ServletRequestContext;
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.artifacts.ArtifactQuery;
+import org.kie.cekit.cacher.bandwidth.BandwidthShaper;
+import org.kie.cekit.cacher.bandwidth.ServingLimiter;
+import org.kie.cekit.cacher.downloads.DownloadPriority;
+import org.kie.cekit.cacher.downloads.DownloadScheduler;
+import org.kie.cekit.cacher.downloads.ReadThrough;
+import org.kie.cekit.cacher.downloads.UpstreamException;
+import org.kie.cekit.cacher.downloads.UpstreamUnavailableException;
+import org.kie.cekit.cacher.objects.ArtifactAvailability;
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+import org.kie.cekit.cacher.objects.ArtifactPage;
+import org.kie.cekit.cacher.objects.FetchResult;
 import org.kie.cekit.cacher.objects.PlainArtifact;
+import org.kie.cekit.cacher.objects.ServingStatus;
+import org.kie.cekit.cacher.utils.ArtifactDigester;
 import org.kie.cekit.cacher.utils.CacherUtils;
 import org.kie.cekit.cacher.utils.UrlUtils;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.ws.rs.BeanParam;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.lang.invoke.MethodHandles;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 @Path("/resource")
 public class CacherResource {
 
+    static final String NDJSON = "application/x-ndjson";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_LOOKUP = 1000;
+    private static final Jsonb JSONB = JsonbBuilder.create();
+
     private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
 
     @Inject
     CacherUtils cacherUtils;
 
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    DownloadScheduler downloadScheduler;
+
+    @Inject
+    BandwidthShaper bandwidthShaper;
+
+    @Inject
+    ReadThrough readThrough;
+
+    @Inject
+    ArtifactSender artifactSender;
+
+    @Inject
+    ServingLimiter servingLimiter;
+
     @POST
     @Produces(MediaType.TEXT_PLAIN)
     @Path("/fetch/{url}")
@@ -36,34 +101,202 @@ public class CacherResource {
 
         StringBuilder responseMessage = new StringBuilder();
         if (UrlUtils.isUrlValid(url)) {
-            responseMessage.append(cacherUtils.fetchFile(url));
+            try {
+                // manual requests are queued ahead of nightly and pre load downloads
+                responseMessage.append(downloadScheduler.submit(url, DownloadPriority.MANUAL, Optional.empty()).join().getMessage());
+            } catch (CompletionException e) {
+                responseMessage.append("Failed to fetch artifact: " + e.getCause().getMessage());
+            }
         } else {
             responseMessage.append("Failed to fetch artifact, please check the url and try again");
         }
         return Response.ok(responseMessage.toString()).build();
     }
 
+    /**
+     * Sends the artifact with the given checksum. On a miss, if the url of the artifact is given, the artifact is
+     * fetched from it and sent to the client at the same time, see {@link ReadThrough}.
+     */
     @GET
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    @ServingLimited
     @Path("/{checksum}")
-    public Response getArtifact(@PathParam("checksum") String checksum) {
+    public Response getArtifact(@PathParam("checksum") String checksum,
+                                @QueryParam("url") String url,
+                                @HeaderParam("Range") String range,
+                                @HeaderParam("If-Range") String ifRange,
+                                @Context Request request,
+                                @Context HttpServletResponse servletResponse) throws IOException {
         log.info("Querying artifact " + checksum);
 
-        if (cacherUtils.fileExists(checksum)) {
+        if (null != url && !url.isEmpty() && !artifactIndex.contains(checksum)) {
+            if (!ArtifactDigester.isChecksum(checksum)) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("Invalid checksum " + checksum).type(MediaType.TEXT_PLAIN).build();
+            }
+            try {
+                Optional<ReadThrough.Transfer> transfer = readThrough.open(url, checksum);
+                if (transfer.isPresent()) {
+                    return readThrough(transfer.get());
+                }
+                log.info("Artifact " + url + " already being fetched, waiting for it.");
+                Optional<FetchResult> fetched = readThrough.await(url);
+                if (fetched.isPresent() && FetchResult.Status.FAILED == fetched.get().getStatus()) {
+                    return Response.status(Response.Status.BAD_GATEWAY).entity(fetched.get().getMessage()).type(MediaType.TEXT_PLAIN).build();
+                }
+            } catch (UpstreamUnavailableException e) {
+                Response.ResponseBuilder unavailable = Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                        .entity(e.getMessage()).type(MediaType.TEXT_PLAIN);
+                if (e.getRetryAfter() > 0) {
+                    unavailable.header("Retry-After", (e.getRetryAfter() + 999) / 1000);
+                }
+                return unavailable.build();
+            } catch (UpstreamException e) {
+                return Response.status(e.getCode() == 404 ? Response.Status.NOT_FOUND : Response.Status.BAD_GATEWAY)
+                        .entity(e.getMessage()).type(MediaType.TEXT_PLAIN).build();
+            } catch (IOException e) {
+                return Response.status(Response.Status.BAD_GATEWAY).entity(e.getMessage()).type(MediaType.TEXT_PLAIN).build();
+            }
+        }
 
-            java.nio.file.Path file2download = cacherUtils.getFile(checksum).get();
-            Response.ResponseBuilder response = Response.ok(file2download.toFile());
-            response.header("Content-Disposition", "attachment;filename=" + file2download.getFileName());
+        Optional<ArtifactMetadata> artifact = artifactIndex.get(checksum);
+        if (artifact.isPresent()) {
 
-            log.info("File download successfully requested: " + file2download.toFile());
+            java.nio.file.Path file2download = artifactIndex.pathOf(artifact.get());
+            artifactIndex.touch(checksum);
+            log.info("File download successfully requested: " + file2download.toFile() + (null == range ? "" : ", " + range));
 
-            return response.build();
+            return artifactSender.send(file2download, artifact.get(), request, range, ifRange, servletResponse);
         } else {
             log.info("File not found " + checksum);
             return Response.status(Response.Status.NOT_FOUND).build();
         }
     }
 
+    /**
+     * Answers the length, ETag and last modification of the artifact from the index, without reading it.
+     */
+    @HEAD
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    @Path("/{checksum}")
+    public Response headArtifact(@PathParam("checksum") String checksum) throws IOException {
+        Optional<ArtifactMetadata> artifact = artifactIndex.get(checksum);
+        if (artifact.isPresent()) {
+            return artifactSender.head(artifactIndex.pathOf(artifact.get()), artifact.get());
+        }
+        return Response.status(Response.Status.NOT_FOUND).build();
+    }
+
+    /**
+     * Sends the most recently persisted artifact with the given file name, or redirects to its checksum url.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    @ServingLimited
+    @Path("/by-name/{fileName}")
+    public Response getArtifactByName(@PathParam("fileName") String fileName,
+                                      @QueryParam("redirect") boolean redirect,
+                                      @HeaderParam("Range") String range,
+                                      @HeaderParam("If-Range") String ifRange,
+                                      @Context Request request,
+                                      @Context UriInfo uriInfo,
+                                      @Context HttpServletResponse servletResponse) throws IOException {
+        Optional<ArtifactMetadata> artifact = artifactIndex.latestOf(fileName);
+        if (!artifact.isPresent()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if (redirect) {
+            return Response.temporaryRedirect(uriInfo.getBaseUriBuilder()
+                    .path(CacherResource.class)
+                    .path(artifact.get().getChecksum())
+                    .build()).build();
+        }
+        artifactIndex.touch(artifact.get().getChecksum());
+        return artifactSender.send(artifactIndex.pathOf(artifact.get()), artifact.get(), request, range, ifRange, servletResponse);
+    }
+
+    /**
+     * Lists the artifacts whose file name starts with the given prefix, sorted by name.
+     *
+     * @param prefix file name prefix, all artifacts if empty
+     * @param limit  at most this many artifacts, 100 by default and at most 1000
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/by-name")
+    public Response searchByName(@QueryParam("prefix") String prefix,
+                                 @QueryParam("limit") @DefaultValue("100") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Invalid limit " + limit + ", it must be between 1 and " + MAX_PAGE_SIZE + ".")
+                    .type(MediaType.TEXT_PLAIN)
+                    .build();
+        }
+        List<PlainArtifact> artifacts = artifactIndex.query(new ArtifactQuery().setNamePrefix(prefix))
+                .limit(limit)
+                .map(cacherUtils::toPlainArtifact)
+                .collect(Collectors.toList());
+        return Response.ok(artifacts).build();
+    }
+
+    /**
+     * @return the artifacts being served and the counters of the serving limits
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/serving")
+    public ServingStatus servingStatus() {
+        return servingLimiter.status();
+    }
+
+    /**
+     * Tells, in one round trip, which of the given checksums are available, answered from the index only.
+     *
+     * @param checksums md5, sha1 or sha256 digests, at most 1000
+     * @return the availability of every checksum, in the same order
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/lookup")
+    public Response lookup(List<String> checksums) {
+        if (null == checksums || checksums.isEmpty() || checksums.size() > MAX_LOOKUP) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Expected from 1 to " + MAX_LOOKUP + " checksums.")
+                    .type(MediaType.TEXT_PLAIN)
+                    .build();
+        }
+        List<ArtifactAvailability> availability = checksums.stream()
+                .map(checksum -> artifactIndex.get(checksum)
+                        .map(artifact -> new ArtifactAvailability(checksum, artifact))
+                        .orElseGet(() -> new ArtifactAvailability(checksum)))
+                .collect(Collectors.toList());
+        return Response.ok(availability).build();
+    }
+
+    private Response readThrough(ReadThrough.Transfer transfer) {
+        // gives the transfer up if the response ends without it being written
+        ServletRequestContext context = ServletRequestContext.current();
+        if (null != context) {
+            context.getExchange().addExchangeCompleteListener((exchange, next) -> {
+                transfer.close();
+                next.proceed();
+            });
+        }
+        Response.ResponseBuilder response = Response.ok((StreamingOutput) output -> {
+            bandwidthShaper.servingStarted();
+            try {
+                transfer.writeTo(output);
+            } finally {
+                bandwidthShaper.servingFinished();
+            }
+        });
+        response.header("Content-Disposition", "attachment;filename=" + transfer.getFileName());
+        if (transfer.getContentLength() >= 0) {
+            response.header("Content-Length", transfer.getContentLength());
+        }
+        return response.build();
+    }
+
     @DELETE
     @Produces(MediaType.TEXT_PLAIN)
     public Response deleteArtifact(List<String> checksum) {
@@ -83,9 +316,66 @@ public class CacherResource {
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/")
-    public PlainArtifact[] listArtifacts() {
-        log.fine("Returning list of artifacts");
-        return cacherUtils.getPersistedArtifacts().toArray(new PlainArtifact[0]);
+    public Response listArtifacts(@Context Request request) {
+        return conditional(request, () -> {
+            log.fine("Returning list of artifacts");
+            return cacherUtils.getPersistedArtifacts().toArray(new PlainArtifact[0]);
+        });
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/artifacts")
+    public Response queryArtifacts(@BeanParam ListingParams params, @Context Request request) {
+        ArtifactQuery query = params.toQuery();
+        int limit = params.limit(DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+        return conditional(request, () -> {
+            log.fine("Returning page of artifacts, limit " + limit);
+            List<ArtifactMetadata> artifacts = artifactIndex.query(query).limit(limit + 1).collect(Collectors.toList());
+            String nextCursor = null;
+            if (artifacts.size() > limit) {
+                artifacts = artifacts.subList(0, limit);
+                nextCursor = query.cursorOf(artifacts.get(limit - 1));
+            }
+            return new ArtifactPage(artifacts.stream().map(cacherUtils::toPlainArtifact).collect(Collectors.toList()), nextCursor);
+        });
+    }
+
+    @GET
+    @Produces(NDJSON)
+    @Path("/artifacts")
+    public Response streamArtifacts(@BeanParam ListingParams params, @Context Request request) {
+        ArtifactQuery query = params.toQuery();
+        int limit = params.limit(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        return conditional(request, () -> {
+            log.fine("Streaming artifacts");
+            // one json artifact per line, written as the index is traversed.
+            return (StreamingOutput) output -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                Iterator<ArtifactMetadata> artifacts = artifactIndex.query(query).limit(limit).iterator();
+                while (artifacts.hasNext()) {
+                    writer.write(JSONB.toJson(cacherUtils.toPlainArtifact(artifacts.next())));
+                    writer.write('\n');
+                }
+                writer.flush();
+            };
+        });
+    }
+
+    /**
+     * Answers 304 Not Modified when the client already has the current version of the index,
+     * otherwise builds the entity tagged with it. Clients must revalidate on every request.
+     */
+    private Response conditional(Request request, Supplier<Object> entity) {
+        EntityTag tag = new EntityTag(artifactIndex.generation());
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setNoCache(true);
+
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (null != notModified) {
+            return notModified.cacheControl(cacheControl).build();
+        }
+        return Response.ok(entity.get()).tag(tag).cacheControl(cacheControl).build();
     }
 
 }
\ No newline at end of file
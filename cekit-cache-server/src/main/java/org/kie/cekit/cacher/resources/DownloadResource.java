@@ -0,0 +1,111 @@
+package org.kie.cekit.cacher.resources;
+
+import org.kie.cekit.cacher.downloads.DownloadScheduler;
+import org.kie.cekit.cacher.downloads.DownloadTracker;
+import org.kie.cekit.cacher.downloads.UpstreamHealth;
+import org.kie.cekit.cacher.objects.DownloadStatus;
+import org.kie.cekit.cacher.objects.UpstreamHostStatus;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+@Path("/resource/downloads")
+public class DownloadResource {
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    DownloadScheduler downloadScheduler;
+
+    @Inject
+    DownloadTracker downloadTracker;
+
+    @Inject
+    UpstreamHealth upstreamHealth;
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public DownloadStatus[] listDownloads() {
+        log.fine("Returning the downloads");
+        return downloads().toArray(new DownloadStatus[0]);
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/{fileName}")
+    public Response getDownload(@PathParam("fileName") String fileName) {
+        return downloads().stream()
+                .filter(download -> fileName.equals(download.getFileName()))
+                .findFirst()
+                .map(download -> Response.ok(download).build())
+                .orElse(Response.status(Response.Status.NOT_FOUND).build());
+    }
+
+    /**
+     * @return circuit breaker state and retry counters of every upstream host
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/hosts")
+    public UpstreamHostStatus[] listHosts() {
+        return upstreamHealth.hosts().toArray(new UpstreamHostStatus[0]);
+    }
+
+    /**
+     * Streams a download event whenever a download is queued, changes state or makes progress,
+     * the current downloads are sent first.
+     */
+    @GET
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @Path("/events")
+    public void downloadEvents(@QueryParam("fileName") String fileName, @Context SseEventSink sink, @Context Sse sse) {
+        log.fine("Download events subscriber connected");
+        for (DownloadStatus download : downloads()) {
+            send(download, fileName, sink, sse);
+        }
+        downloadTracker.subscribe(download -> send(download, fileName, sink, sse));
+    }
+
+    /**
+     * @return running and queued downloads in the order they will start, then the recently finished ones
+     */
+    private List<DownloadStatus> downloads() {
+        List<DownloadStatus> downloads = new ArrayList<>(downloadScheduler.queue());
+        downloads.addAll(downloadTracker.finished());
+        return downloads;
+    }
+
+    /**
+     * @return false once the client is gone
+     */
+    private boolean send(DownloadStatus download, String fileName, SseEventSink sink, Sse sse) {
+        if (sink.isClosed()) {
+            return false;
+        }
+        if (null == fileName || fileName.equals(download.getFileName())) {
+            sink.send(sse.newEventBuilder()
+                    .name(download.getState().toLowerCase())
+                    .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                    .data(DownloadStatus.class, download)
+                    .build())
+                    .exceptionally(e -> {
+                        sink.close();
+                        return null;
+                    });
+        }
+        return true;
+    }
+}
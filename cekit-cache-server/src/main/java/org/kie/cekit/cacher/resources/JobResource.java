@@ -0,0 +1,80 @@
+package org.kie.cekit.cacher.resources;
+
+import org.kie.cekit.cacher.downloads.FetchJobs;
+import org.kie.cekit.cacher.objects.FetchJob;
+import org.kie.cekit.cacher.objects.FetchRequest;
+
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+@Path("/resource/jobs")
+public class JobResource {
+
+    private static final int MAX_WAIT = 60;
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    FetchJobs fetchJobs;
+
+    /**
+     * Starts fetching the given artifacts in background
+     *
+     * @param requests urls, optionally with their expected checksum
+     * @return 202 Accepted with the job status, its location is on the Location header
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response submitJob(List<FetchRequest> requests, @Context UriInfo uriInfo) {
+        if (null == requests || requests.isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("No artifacts to fetch.").type(MediaType.TEXT_PLAIN).build();
+        }
+        FetchJob job = fetchJobs.submit(requests);
+        return Response.accepted(job).location(uriInfo.getAbsolutePathBuilder().path(job.getId()).build()).build();
+    }
+
+    /**
+     * Returns the job status, with wait greater than zero the response is held until the job finishes or the
+     * given seconds, at most 60, elapse.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/{id}")
+    public void getJob(@PathParam("id") String id,
+                       @QueryParam("wait") @DefaultValue("0") int wait,
+                       @Suspended AsyncResponse response) {
+        Optional<CompletableFuture<FetchJob>> done = fetchJobs.whenDone(id);
+        if (!done.isPresent()) {
+            response.resume(Response.status(Response.Status.NOT_FOUND).build());
+            return;
+        }
+        if (wait <= 0 || done.get().isDone()) {
+            response.resume(fetchJobs.get(id).get());
+            return;
+        }
+        log.fine("Waiting up to " + wait + " seconds for job " + id);
+        response.setTimeout(Math.min(wait, MAX_WAIT), TimeUnit.SECONDS);
+        response.setTimeoutHandler(timedOut -> timedOut.resume(fetchJobs.get(id).get()));
+        done.get().thenAccept(response::resume);
+    }
+}
@@ -0,0 +1,80 @@
+package org.kie.cekit.cacher.resources;
+
+import org.kie.cekit.cacher.artifacts.ArtifactQuery;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
+
+/**
+ * Query parameters accepted by the artifacts listing
+ */
+public class ListingParams {
+
+    @QueryParam("name")
+    String namePrefix;
+
+    @QueryParam("version")
+    String version;
+
+    @QueryParam("branch")
+    String branch;
+
+    @QueryParam("buildDate")
+    String buildDate;
+
+    @QueryParam("sort")
+    String sort;
+
+    @QueryParam("order")
+    @DefaultValue("asc")
+    String order;
+
+    @QueryParam("cursor")
+    String cursor;
+
+    @QueryParam("limit")
+    Integer limit;
+
+    /**
+     * @return the query described by the request parameters
+     * @throws BadRequestException for invalid sort, order or cursor
+     */
+    public ArtifactQuery toQuery() {
+        if (!"asc".equalsIgnoreCase(order) && !"desc".equalsIgnoreCase(order)) {
+            throw badRequest("Invalid order " + order + ", valid values are asc and desc.");
+        }
+        try {
+            return new ArtifactQuery()
+                    .setNamePrefix(namePrefix)
+                    .setVersion(version)
+                    .setBranch(branch)
+                    .setBuildDate(buildDate)
+                    .setSort(ArtifactQuery.Sort.parse(sort))
+                    .setDescending("desc".equalsIgnoreCase(order))
+                    .setCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            throw badRequest(e.getMessage());
+        }
+    }
+
+    /**
+     * @param defaultLimit used when no limit is given
+     * @param maxLimit     biggest limit accepted
+     * @return the requested page size
+     */
+    public int limit(int defaultLimit, int maxLimit) {
+        if (null == limit) {
+            return defaultLimit;
+        }
+        if (limit < 1 || limit > maxLimit) {
+            throw badRequest("Invalid limit " + limit + ", it must be between 1 and " + maxLimit + ".");
+        }
+        return limit;
+    }
+
+    private BadRequestException badRequest(String message) {
+        return new BadRequestException(Response.status(Response.Status.BAD_REQUEST).entity(message).build());
+    }
+}
@@ -0,0 +1,47 @@
+package org.kie.cekit.cacher.resources;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.servlet.handlers.ServletRequestContext;
+import org.kie.cekit.cacher.bandwidth.ServingLimiter;
+
+import javax.inject.Inject;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import java.lang.invoke.MethodHandles;
+import java.util.logging.Logger;
+
+/**
+ * Rejects with 503 and Retry-After the requests of the {@link ServingLimited} endpoints over the serving limits.
+ * The transfer slot is given back when the exchange completes, after the artifact is sent or the transfer failed.
+ */
+@Provider
+@ServingLimited
+public class ServingLimitFilter implements ContainerRequestFilter {
+
+    private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    ServingLimiter servingLimiter;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        HttpServerExchange exchange = ServletRequestContext.requireCurrent().getExchange();
+        String client = exchange.getSourceAddress().getAddress().getHostAddress();
+        if (!servingLimiter.tryAcquire(client)) {
+            log.fine("Too many transfers or requests, rejecting " + requestContext.getUriInfo().getPath() + " from " + client);
+            requestContext.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", servingLimiter.retryAfter())
+                    .entity("Too many artifacts being served or requested, retry later.")
+                    .type(MediaType.TEXT_PLAIN)
+                    .build());
+            return;
+        }
+        exchange.addExchangeCompleteListener((completed, next) -> {
+            servingLimiter.release(client);
+            next.proceed();
+        });
+    }
+}
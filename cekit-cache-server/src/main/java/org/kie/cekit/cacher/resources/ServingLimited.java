@@ -0,0 +1,16 @@
+package org.kie.cekit.cacher.resources;
+
+import javax.ws.rs.NameBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the endpoints sending artifacts, they are subject to the serving limits, see {@link ServingLimitFilter}
+ */
+@NameBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface ServingLimited {
+}
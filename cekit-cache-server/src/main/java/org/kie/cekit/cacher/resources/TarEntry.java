@@ -0,0 +1,120 @@
+package org.kie.cekit.cacher.resources;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Headers of a regular file in a ustar archive, the file content follows them padded to the block size.
+ * Names longer than the ustar name field are preceded by a GNU long name entry and sizes that do not fit the
+ * octal size field are written in base-256, both understood by GNU tar, bsdtar and commons-compress.
+ */
+class TarEntry {
+
+    static final int BLOCK = 512;
+    // two empty blocks end the archive
+    static final byte[] END = new byte[2 * BLOCK];
+
+    private static final int NAME_LENGTH = 100;
+    private static final int PREFIX_LENGTH = 155;
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+    private final String directory;
+    private final String fileName;
+    private final long size;
+    private final long lastModified;
+
+    /**
+     * @param directory    directory of the entry, at most 155 bytes
+     * @param fileName     name of the entry
+     * @param size         file length
+     * @param lastModified epoch millis
+     */
+    TarEntry(String directory, String fileName, long size, long lastModified) {
+        this.directory = directory;
+        this.fileName = fileName;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * @return the headers written before the file content
+     */
+    byte[] headers() {
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        byte[] prefix = directory.getBytes(StandardCharsets.UTF_8);
+        if (name.length <= NAME_LENGTH && prefix.length <= PREFIX_LENGTH) {
+            return header(name, prefix, size, '0');
+        }
+        byte[] longName = (directory + "/" + fileName + "\0").getBytes(StandardCharsets.UTF_8);
+        byte[] headers = new byte[BLOCK + (int) padded(longName.length) + BLOCK];
+        System.arraycopy(header("././@LongLink".getBytes(StandardCharsets.UTF_8), new byte[0], longName.length, 'L'), 0, headers, 0, BLOCK);
+        System.arraycopy(longName, 0, headers, BLOCK, longName.length);
+        byte[] truncated = Arrays.copyOf(name, Math.min(name.length, NAME_LENGTH));
+        System.arraycopy(header(truncated, new byte[0], size, '0'), 0, headers, headers.length - BLOCK, BLOCK);
+        return headers;
+    }
+
+    /**
+     * @return zeros filling the last block of the file content
+     */
+    byte[] padding() {
+        return new byte[(int) (padded(size) - size)];
+    }
+
+    /**
+     * @return the bytes the entry takes in the archive, headers and padding included
+     */
+    long length() {
+        return headers().length + padded(size);
+    }
+
+    static long padded(long length) {
+        return (length + BLOCK - 1) / BLOCK * BLOCK;
+    }
+
+    private byte[] header(byte[] name, byte[] prefix, long entrySize, char type) {
+        byte[] header = new byte[BLOCK];
+        System.arraycopy(name, 0, header, 0, name.length);
+        octal(header, 100, 8, 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        if (entrySize <= MAX_OCTAL_SIZE) {
+            octal(header, 124, 12, entrySize);
+        } else {
+            header[124] = (byte) 0x80;
+            for (int i = 0; i < 8; i++) {
+                header[135 - i] = (byte) (entrySize >>> (8 * i));
+            }
+        }
+        octal(header, 136, 12, lastModified / 1000);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        System.arraycopy(prefix, 0, header, 345, prefix.length);
+
+        // computed with the checksum field filled with spaces
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        octal(header, 148, 7, checksum);
+        return header;
+    }
+
+    /**
+     * Zero padded octal number followed by a NUL
+     */
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int width = length - 1;
+        for (int i = 0; i < width; i++) {
+            int digit = i - (width - digits.length());
+            header[offset + i] = (byte) (digit < 0 ? '0' : digits.charAt(digit));
+        }
+        header[offset + width] = 0;
+    }
+}
@@ -0,0 +1,198 @@
+package org.kie.cekit.cacher.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.LongConsumer;
+
+/**
+ * Computes the artifact checksums (md5, sha1 and sha256) while the bytes are being written, so a downloaded file
+ * never needs to be read back from disk to be hashed.
+ * CEKit module descriptors can reference an artifact by any of them.
+ */
+public class ArtifactDigester {
+
+    // large direct buffer, the transfer is dominated by the network/disk, not by the digest.
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final MessageDigest md5;
+    private final MessageDigest sha1;
+    private final MessageDigest sha256;
+    private String md5Hex;
+    private String sha1Hex;
+    private String sha256Hex;
+
+    public ArtifactDigester() {
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+            sha1 = MessageDigest.getInstance("SHA-1");
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Digest algorithm is not available", e);
+        }
+    }
+
+    /**
+     * Digest the given bytes, from the buffer position to its limit, with all algorithms.
+     *
+     * @param buffer
+     */
+    public void update(ByteBuffer buffer) {
+        if (null != md5Hex) {
+            throw new IllegalStateException("Digests were already computed");
+        }
+        int position = buffer.position();
+        md5.update(buffer);
+        buffer.position(position);
+        sha1.update(buffer);
+        buffer.position(position);
+        sha256.update(buffer);
+    }
+
+    /**
+     * Discards everything digested so far, used when a transfer starts over.
+     */
+    public void reset() {
+        md5.reset();
+        sha1.reset();
+        sha256.reset();
+        md5Hex = null;
+        sha1Hex = null;
+        sha256Hex = null;
+    }
+
+    /**
+     * @return md5 hex representation
+     */
+    public String md5() {
+        finish();
+        return md5Hex;
+    }
+
+    /**
+     * @return sha1 hex representation
+     */
+    public String sha1() {
+        finish();
+        return sha1Hex;
+    }
+
+    /**
+     * @return sha256 hex representation
+     */
+    public String sha256() {
+        finish();
+        return sha256Hex;
+    }
+
+    /**
+     * Copies the source into the target channel, starting at the target current position,
+     * digesting every byte written.
+     *
+     * @param source
+     * @param target
+     * @return number of bytes transferred
+     * @throws IOException
+     */
+    public long transfer(ReadableByteChannel source, FileChannel target) throws IOException {
+        return transfer(source, target, written -> {
+        });
+    }
+
+    /**
+     * Copies the source into the target channel, starting at the target current position,
+     * digesting every byte written.
+     *
+     * @param source
+     * @param target
+     * @param progress notified of the bytes written after each write
+     * @return number of bytes transferred
+     * @throws IOException
+     */
+    public long transfer(ReadableByteChannel source, FileChannel target, LongConsumer progress) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long transferred = 0;
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            ByteBuffer digestView = buffer.duplicate();
+            while (buffer.hasRemaining()) {
+                int written = target.write(buffer);
+                transferred += written;
+                progress.accept(written);
+            }
+            update(digestView);
+            buffer.clear();
+        }
+        return transferred;
+    }
+
+    /**
+     * Compares the digests with a checksum, the algorithm is picked from the checksum length.
+     *
+     * @param checksum md5, sha1 or sha256 hex representation
+     * @return true if the digest of the same algorithm matches
+     */
+    public boolean matches(String checksum) {
+        if (null == checksum) {
+            return false;
+        }
+        switch (checksum.length()) {
+            case 32:
+                return md5().equalsIgnoreCase(checksum);
+            case 40:
+                return sha1().equalsIgnoreCase(checksum);
+            case 64:
+                return sha256().equalsIgnoreCase(checksum);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param checksum
+     * @return true if the given string looks like a md5, sha1 or sha256 hex representation
+     */
+    public static boolean isChecksum(String checksum) {
+        return null != checksum
+                && (checksum.length() == 32 || checksum.length() == 40 || checksum.length() == 64)
+                && checksum.chars().allMatch(c -> Character.digit(c, 16) >= 0);
+    }
+
+    /**
+     * Digest the given file from the start, used when the bytes were not streamed through this digester.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void digest(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                update(buffer);
+                buffer.clear();
+            }
+        }
+    }
+
+    private void finish() {
+        if (null == md5Hex) {
+            md5Hex = hex(md5.digest());
+            sha1Hex = hex(sha1.digest());
+            sha256Hex = hex(sha256.digest());
+        }
+    }
+
+    private static String hex(byte[] digest) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+}
@@ -1,7 +1,15 @@
 package org.kie.cekit.cacher.utils;
 
 import io.quarkus.scheduler.Scheduled;
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.artifacts.ArtifactSidecar;
 import org.kie.cekit.cacher.builds.github.BuildDateUpdatesInterceptor;
+import org.kie.cekit.cacher.downloads.ArtifactDownloader;
+import org.kie.cekit.cacher.downloads.DownloadPriority;
+import org.kie.cekit.cacher.downloads.DownloadScheduler;
+import org.kie.cekit.cacher.downloads.UpstreamException;
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+import org.kie.cekit.cacher.objects.FetchResult;
 import org.kie.cekit.cacher.objects.PlainArtifact;
 import org.kie.cekit.cacher.properties.CacherProperties;
 
@@ -9,22 +17,14 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
-import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
@@ -43,6 +43,18 @@ public class CacherUtils {
     @Inject
     BuildDateUpdatesInterceptor buildCallback;
 
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    ArtifactSidecar artifactSidecar;
+
+    @Inject
+    DownloadScheduler downloadScheduler;
+
+    @Inject
+    ArtifactDownloader artifactDownloader;
+
     /**
      * Clean 1 day old files under tmp directory
      */
@@ -66,6 +78,33 @@ public class CacherUtils {
     }
 
 
+    /**
+     * Computes the sha1 and sha256 of the artifacts that only have the md5,
+     * e.g. artifacts found by a rescan without metadata file.
+     */
+    @Scheduled(every = "6h", delay = 10, delayUnit = TimeUnit.MINUTES)
+    public void backfillDigests() {
+        artifactIndex.artifacts().stream()
+                .filter(artifact -> null == artifact.getSha1() || null == artifact.getSha256())
+                .collect(Collectors.toList())
+                .forEach(artifact -> {
+                    Path file = artifactIndex.pathOf(artifact);
+                    try {
+                        ArtifactDigester digester = new ArtifactDigester();
+                        digester.digest(file);
+                        ArtifactMetadata updated = artifactIndex.get(artifact.getChecksum()).orElse(artifact);
+                        updated.setSha1(digester.sha1());
+                        updated.setSha256(digester.sha256());
+                        if (artifactIndex.replace(updated)) {
+                            artifactSidecar.write(file.getParent(), updated);
+                            log.fine("Digests computed for " + artifact.getFileName());
+                        }
+                    } catch (IOException e) {
+                        log.warning("Failed to digest " + file + ": " + e.getMessage());
+                    }
+                });
+    }
+
     /**
      * Pre load artifacts to the cacher using a txt located on filesystem
      * The file location can be configured with this system property:
@@ -80,9 +119,8 @@ public class CacherUtils {
                 while ((line = br.readLine()) != null) {
                     String finalLine = line;
                     if (!fileExistsByNameExcludeTmp(UrlUtils.getFileName(finalLine))) {
-                        new Thread(() -> {
-                            log.info(fetchFile(finalLine));
-                        }).start();
+                        downloadScheduler.submit(finalLine, DownloadPriority.PRELOAD, Optional.empty())
+                                .thenAccept(result -> log.info(result.getMessage()));
                     }
                 }
             } catch (IOException e) {
@@ -114,58 +152,99 @@ public class CacherUtils {
     }
 
     /**
-     * Download te given file and persit it locally
+     * Download te given file and persit it locally.
+     * Runs on the caller thread, it is the download run by the {@link DownloadScheduler}, queue it there instead.
      *
      * @param url
-     * @return the result of the operation
+     * @param buildInfo nightly build information to be stored with the artifact metadata
+     * @return the result of the operation, with the artifact checksum when it is persisted
      */
-    public String fetchFile(String url) {
+    public FetchResult fetch(String url, Optional<PlainArtifact> buildInfo) {
 
         String fileName = UrlUtils.getFileName(url);
         String filePath = cacherProperties.getArtifactsTmpDir() + "/" + fileName;
-        String fileChecksum = "";
 
-        if (Files.exists(Paths.get(filePath))) {
-            return "File " + fileName + " still being downloaded, skipping...";
+        if (!artifactIndex.markInProgress(fileName)) {
+            return FetchResult.inProgress(fileName);
         }
-
         try {
-            log.info("Trying to fetch file: " + url);
-            ReadableByteChannel readableByteChannel = Channels.newChannel(new URL(url).openStream());
-            FileOutputStream fileOutputStream = new FileOutputStream(filePath);
-            fileOutputStream.getChannel().transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
-
-            fileChecksum = md5sum(filePath);
-
-            try {
-                Files.createDirectory(Paths.get(cacherProperties.getCacherArtifactsDir() + "/" + fileChecksum));
-                Files.move(Paths.get(filePath), Paths.get(cacherProperties.getCacherArtifactsDir() + "/" + fileChecksum + "/" + fileName));
+            // a tmp file without resume record is being written by someone else
+            if (Files.exists(Paths.get(filePath)) && !artifactDownloader.isResumable(Paths.get(filePath))) {
+                return FetchResult.inProgress(fileName);
+            }
+            return download(url, fileName, filePath, buildInfo);
+        } finally {
+            artifactIndex.clearInProgress(fileName);
+        }
+    }
 
-            } catch (FileAlreadyExistsException e) {
-                try {
-                    Files.delete(Paths.get(filePath));
-                } catch (IOException ex) {
-                    //ignore
-                }
-                return "File " + fileName + " already exists.";
+    private FetchResult download(String url, String fileName, String filePath, Optional<PlainArtifact> buildInfo) {
+        String fileChecksum = "";
+        long start = System.currentTimeMillis();
 
-            } finally {
-                readableByteChannel.close();
-                fileOutputStream.close();
-            }
+        try {
+            log.info("Trying to fetch file: " + url);
+            // the checksum is computed while the bytes are written, the file is never read back.
+            ArtifactDigester digester = new ArtifactDigester();
+            artifactDownloader.download(url, Paths.get(filePath), digester, buildInfo);
+            fileChecksum = digester.md5();
+            return persist(url, Paths.get(filePath), digester, buildInfo, start);
 
         } catch (final IOException e) {
             e.printStackTrace();
+            artifactDownloader.abort(Paths.get(filePath));
             try {
-                Files.delete(Paths.get(filePath));
                 Files.delete(Paths.get(cacherProperties.getCacherArtifactsDir() + "/" + fileChecksum));
             } catch (IOException ex) {
                 // ignore
             }
-            return e.getMessage();
+            return FetchResult.failed(fileName, e.getMessage(), UpstreamException.isTransient(e));
+        }
+    }
+
+    /**
+     * Moves a completely downloaded tmp file into the artifacts dir and indexes it.
+     *
+     * @param url       the artifact was downloaded from
+     * @param tmpFile   downloaded file, named after the artifact
+     * @param digester  holding the digests of the whole file
+     * @param buildInfo nightly build information to be stored with the artifact metadata
+     * @param start     when the download started, in milliseconds
+     * @return persisted, or already exists when an artifact with the same checksum was there, then the tmp file is
+     * deleted
+     * @throws IOException
+     */
+    public FetchResult persist(String url, Path tmpFile, ArtifactDigester digester, Optional<PlainArtifact> buildInfo, long start) throws IOException {
+        String fileName = tmpFile.getFileName().toString();
+        String fileChecksum = digester.md5();
+        try {
+            Files.createDirectory(Paths.get(cacherProperties.getCacherArtifactsDir() + "/" + fileChecksum));
+            Path persisted = Files.move(tmpFile, Paths.get(cacherProperties.getCacherArtifactsDir() + "/" + fileChecksum + "/" + fileName));
+            ArtifactMetadata artifact = new ArtifactMetadata(fileChecksum, fileName);
+            artifact.setSha1(digester.sha1());
+            artifact.setSha256(digester.sha256());
+            artifact.setSourceUrl(url);
+            artifact.setSize(Files.size(persisted));
+            artifact.setLastModified(Files.getLastModifiedTime(persisted).toMillis());
+            artifact.setFetchDuration(System.currentTimeMillis() - start);
+            buildInfo.ifPresent(info -> {
+                artifact.setBuildDate(info.getBuildDate());
+                artifact.setVersion(info.getVersion());
+                artifact.setBranch(info.getBranch());
+            });
+            artifactSidecar.write(persisted.getParent(), artifact);
+            artifactIndex.add(artifact);
+
+        } catch (FileAlreadyExistsException e) {
+            try {
+                Files.delete(tmpFile);
+            } catch (IOException ex) {
+                //ignore
+            }
+            return FetchResult.alreadyExists(fileName, fileChecksum);
         }
         buildCallback.onFilePersisted(fileName, fileChecksum);
-        return "File " + fileName + " persisted.";
+        return FetchResult.persisted(fileName, fileChecksum);
     }
 
     /**
@@ -175,25 +254,17 @@ public class CacherUtils {
      * @return file's absolute path
      */
     public Optional<Path> getFile(String checksum) {
-
-        Path path = FileSystems.getDefault().getPath(cacherProperties.getCacherArtifactsDir() + "/" + checksum);
-
-        try (Stream<Path> walk = Files.walk(path)) {
-            return walk.filter(Files::isRegularFile).findFirst();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return Optional.empty();
-        }
+        return artifactIndex.get(checksum).map(artifactIndex::pathOf);
     }
 
     /**
      * verifies if the given checksum exists
      *
      * @param checksum
-     * @return true if there is a directory with the given checksum
+     * @return true if there is a persisted artifact with the given checksum
      */
     public boolean fileExists(String checksum) {
-        return Files.exists(Paths.get(cacherProperties.getCacherArtifactsDir() + "/" + checksum));
+        return artifactIndex.contains(checksum);
     }
 
     /**
@@ -203,67 +274,34 @@ public class CacherUtils {
      * @return true if the given file exists
      */
     public boolean fileExistsByNameExcludeTmp(String fileName) {
-        Path path = FileSystems.getDefault().getPath(cacherProperties.getCacherArtifactsDir());
-
-        try (Stream<Path> walk = Files.walk(path)) {
-            return walk.filter(Files::isRegularFile)
-                    .filter(file -> !file.toAbsolutePath().getParent().toString().endsWith("tmp"))
-                    .filter(file -> file.getFileName().toString().equals(fileName))
-                    .findFirst().isPresent();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return artifactIndex.containsFileName(fileName);
     }
 
     /**
-     * Generates the given file checksum
-     *
-     * @param filePath
-     * @return file checksum
-     * @throws IOException
+     * @return all persisted files including the downloading ones.
      */
-    private String md5sum(String filePath) throws IOException {
-        StringBuilder result = new StringBuilder();
-        try {
-            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
-
-            try (InputStream input = new FileInputStream(filePath)) {
-                byte[] block = new byte[4096];
-                int length;
-                while ((length = input.read(block)) > 0) {
-                    messageDigest.update(block, 0, length);
-                }
-
-                for (byte b : messageDigest.digest()) {
-                    result.append(String.format("%02x", b));
-                }
-
-            }
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            return null;
-        }
-
-        return result.toString();
+    public List<PlainArtifact> getPersistedArtifacts() {
+        List<PlainArtifact> artifacts = artifactIndex.artifacts().stream()
+                .map(this::toPlainArtifact)
+                .collect(Collectors.toList());
+        artifactIndex.inProgressFiles().stream()
+                .map(fileName -> new PlainArtifact(fileName, "tmp", null, null, null))
+                .forEach(artifacts::add);
+        return artifacts;
     }
 
     /**
-     * @return all persisted files including the downloading ones.
+     * @param artifact
+     * @return the listing representation of the given artifact
      */
-    public List<PlainArtifact> getPersistedArtifacts() {
-        Path path = FileSystems.getDefault().getPath(cacherProperties.getCacherArtifactsDir());
-
-        List<PlainArtifact> artifacts = new ArrayList<>();
-
-        try {
-            artifacts = Files.walk(path).filter(Files::isRegularFile)
-                    .map(p -> new PlainArtifact(p.getFileName().toString(), p.getParent().getFileName().toString(), null, null, null))
-                    .collect(Collectors.toList());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return artifacts;
+    public PlainArtifact toPlainArtifact(ArtifactMetadata artifact) {
+        PlainArtifact plainArtifact = new PlainArtifact(artifact.getFileName(),
+                artifact.getChecksum(),
+                artifact.getBuildDate(),
+                artifact.getVersion(),
+                artifact.getBranch());
+        plainArtifact.setSize(artifact.getSize());
+        return plainArtifact;
     }
 
     /**
@@ -274,12 +312,14 @@ public class CacherUtils {
      */
     public boolean deleteArtifact(String checksum) {
         try {
-            Path path = FileSystems.getDefault().getPath(cacherProperties.getCacherArtifactsDir() + "/" + checksum);
-            try {
-                Files.walk(path).map(Path::toFile)
+            // the artifact can be referenced by any of its digests, but its directory is always named by the md5
+            String md5 = artifactIndex.remove(checksum).map(ArtifactMetadata::getChecksum).orElse(checksum);
+            Path path = FileSystems.getDefault().getPath(cacherProperties.getCacherArtifactsDir() + "/" + md5);
+            try (Stream<Path> walk = Files.walk(path)) {
+                walk.sorted(Comparator.reverseOrder())
+                        .map(Path::toFile)
                         .peek(f -> log.fine("Deleting " + f))
                         .forEach(File::delete);
-                Files.delete(path);
             } catch (IOException e) {
                 e.printStackTrace();
             }
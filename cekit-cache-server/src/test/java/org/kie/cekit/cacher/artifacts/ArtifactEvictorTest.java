@@ -0,0 +1,87 @@
+package org.kie.cekit.cacher.artifacts;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@QuarkusTest
+public class ArtifactEvictorTest {
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    ArtifactEvictor artifactEvictor;
+
+    @Test
+    public void lruTest() {
+        List<ArtifactMetadata> artifacts = Arrays.asList(
+                artifact("a", 100, 3000, 1),
+                artifact("b", 100, 1000, 5),
+                artifact("c", 100, 2000, 9));
+        Assertions.assertEquals(Arrays.asList("b", "c"), checksums(ArtifactEvictor.coldest(artifacts, Collections.emptySet(), 150, false)));
+        Assertions.assertEquals(Collections.singletonList("b"), checksums(ArtifactEvictor.coldest(artifacts, Collections.emptySet(), 100, false)));
+    }
+
+    @Test
+    public void lfuTest() {
+        List<ArtifactMetadata> artifacts = Arrays.asList(
+                artifact("a", 100, 3000, 1),
+                artifact("b", 100, 1000, 5),
+                artifact("c", 100, 2000, 9));
+        Assertions.assertEquals(Arrays.asList("a", "b"), checksums(ArtifactEvictor.coldest(artifacts, Collections.emptySet(), 150, true)));
+    }
+
+    @Test
+    public void pinnedTest() {
+        List<ArtifactMetadata> artifacts = Arrays.asList(
+                artifact("a", 100, 3000, 1),
+                artifact("b", 100, 1000, 5));
+        Assertions.assertEquals(Collections.singletonList("a"), checksums(ArtifactEvictor.coldest(artifacts, Collections.singleton("b"), 150, false)));
+    }
+
+    @Test
+    public void pinnedFromModulesTest() throws IOException {
+        Path module = Paths.get(cacherProperties.getGitDir(), "evictor-test-image", "modules", "test", "module.yaml");
+        Files.createDirectories(module.getParent());
+        Files.write(module, ("schema_version: 1\n" +
+                "name: test\n" +
+                "artifacts:\n" +
+                "- name: test.zip\n" +
+                "  target: test.zip\n" +
+                "  md5: 5D41402ABC4B2A76B9719D911017C592\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            Assertions.assertTrue(artifactEvictor.pinned().contains("5d41402abc4b2a76b9719d911017c592"));
+        } finally {
+            Files.delete(module);
+            Files.delete(module.getParent());
+            Files.delete(module.getParent().getParent());
+            Files.delete(module.getParent().getParent().getParent());
+        }
+    }
+
+    private static ArtifactMetadata artifact(String checksum, long size, long lastAccess, long hitCount) {
+        ArtifactMetadata artifact = new ArtifactMetadata(checksum, checksum + ".zip");
+        artifact.setSize(size);
+        artifact.setLastAccess(lastAccess);
+        artifact.setHitCount(hitCount);
+        return artifact;
+    }
+
+    private static List<String> checksums(List<ArtifactMetadata> artifacts) {
+        return artifacts.stream().map(ArtifactMetadata::getChecksum).collect(Collectors.toList());
+    }
+}
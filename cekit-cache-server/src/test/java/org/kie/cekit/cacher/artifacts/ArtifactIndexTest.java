@@ -0,0 +1,219 @@
+package org.kie.cekit.cacher.artifacts;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@QuarkusTest
+public class ArtifactIndexTest {
+
+    private static final String CHECKSUM = "5d41402abc4b2a76b9719d911017c592";
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    ArtifactSidecar artifactSidecar;
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        artifactIndex.remove(CHECKSUM);
+        Path dir = Paths.get(cacherProperties.getCacherArtifactsDir(), CHECKSUM);
+        Files.deleteIfExists(dir.resolve("hello.txt"));
+        Files.deleteIfExists(dir.resolve(ArtifactSidecar.SIDECAR_FILE));
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void rescanFilesystemTest() throws IOException {
+        Path dir = Files.createDirectories(Paths.get(cacherProperties.getCacherArtifactsDir(), CHECKSUM));
+        Files.write(dir.resolve("hello.txt"), "hello".getBytes());
+
+        artifactIndex.rescan();
+
+        Assertions.assertTrue(artifactIndex.contains(CHECKSUM));
+        Assertions.assertTrue(artifactIndex.containsFileName("hello.txt"));
+        Assertions.assertEquals(5, artifactIndex.get(CHECKSUM).get().getSize());
+        Assertions.assertEquals(dir.resolve("hello.txt"), artifactIndex.pathOf(artifactIndex.get(CHECKSUM).get()));
+        // tmp dir is never indexed
+        Assertions.assertFalse(artifactIndex.contains("tmp"));
+    }
+
+    @Test
+    public void loadFromCatalogTest() {
+        ArtifactMetadata artifact = new ArtifactMetadata(CHECKSUM, "hello.txt");
+        artifact.setSourceUrl("https://example.com/hello.txt");
+        artifactIndex.add(artifact);
+
+        // the artifact does not exist on the filesystem, so it can only be restored by replaying the catalog
+        artifactIndex.load();
+
+        Assertions.assertTrue(artifactIndex.contains(CHECKSUM));
+        Assertions.assertEquals("https://example.com/hello.txt", artifactIndex.get(CHECKSUM).get().getSourceUrl());
+
+        artifactIndex.remove(CHECKSUM);
+        artifactIndex.load();
+        Assertions.assertFalse(artifactIndex.contains(CHECKSUM));
+    }
+
+    @Test
+    public void lastAccessTest() {
+        ArtifactMetadata artifact = new ArtifactMetadata(CHECKSUM, "hello.txt");
+        artifact.setBuildDate("20191015");
+        artifactIndex.add(artifact);
+        artifactIndex.compactCatalog();
+
+        artifactIndex.touch(CHECKSUM);
+        long lastAccess = artifactIndex.get(CHECKSUM).get().getLastAccess();
+        Assertions.assertTrue(lastAccess > 0);
+
+        // saved with the next compaction
+        artifactIndex.compactCatalog();
+        artifactIndex.load();
+        Assertions.assertEquals(lastAccess, artifactIndex.get(CHECKSUM).get().getLastAccess());
+        Assertions.assertEquals(1, artifactIndex.get(CHECKSUM).get().getHitCount());
+        Assertions.assertEquals("20191015", artifactIndex.get(CHECKSUM).get().getBuildDate());
+    }
+
+    @Test
+    public void concurrentTouchTest() throws InterruptedException {
+        artifactIndex.add(new ArtifactMetadata(CHECKSUM, "hello.txt"));
+        ExecutorService requests = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8000; i++) {
+            requests.execute(() -> artifactIndex.touch(CHECKSUM));
+        }
+        requests.shutdown();
+        Assertions.assertTrue(requests.awaitTermination(30, TimeUnit.SECONDS));
+        Assertions.assertEquals(8000, artifactIndex.get(CHECKSUM).get().getHitCount());
+    }
+
+    @Test
+    public void corruptCatalogTest() throws IOException {
+        artifactIndex.add(new ArtifactMetadata(CHECKSUM, "hello.txt"));
+        artifactIndex.compactCatalog();
+        Files.write(Paths.get(cacherProperties.getCacherArtifactsDir(), ArtifactCatalog.SNAPSHOT_FILE), "{not json".getBytes());
+
+        // falls back to a full rescan, the artifact is not on the filesystem
+        artifactIndex.load();
+        Assertions.assertFalse(artifactIndex.contains(CHECKSUM));
+    }
+
+    @Test
+    public void addAndRemoveTest() {
+        artifactIndex.add(new ArtifactMetadata(CHECKSUM, "hello.txt"));
+        Assertions.assertTrue(artifactIndex.contains(CHECKSUM));
+        Assertions.assertTrue(artifactIndex.checksumsOf("hello.txt").contains(CHECKSUM));
+
+        Assertions.assertTrue(artifactIndex.remove(CHECKSUM).isPresent());
+        Assertions.assertFalse(artifactIndex.contains(CHECKSUM));
+        Assertions.assertFalse(artifactIndex.containsFileName("hello.txt"));
+    }
+
+    @Test
+    public void resolveByAnyDigestTest() throws IOException {
+        ArtifactMetadata artifact = new ArtifactMetadata(CHECKSUM, "hello.txt");
+        artifact.setSha1("aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434d");
+        artifact.setSha256("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824");
+        artifactIndex.add(artifact);
+
+        Assertions.assertEquals(CHECKSUM, artifactIndex.get("aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434d").get().getChecksum());
+        Assertions.assertEquals(CHECKSUM, artifactIndex.get("2CF24DBA5FB0A30E26E83B2AC5B9E29E1B161E5C1FA7425E73043362938B9824").get().getChecksum());
+
+        // digests survive a rescan through the metadata file
+        Path dir = Files.createDirectories(Paths.get(cacherProperties.getCacherArtifactsDir(), CHECKSUM));
+        Files.write(dir.resolve("hello.txt"), "hello".getBytes());
+        artifactSidecar.write(dir, artifact);
+        artifactIndex.rescan();
+        Assertions.assertEquals("hello.txt", artifactIndex.get("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824").get().getFileName());
+
+        artifactIndex.remove("aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434d");
+        Assertions.assertFalse(artifactIndex.contains(CHECKSUM));
+        Assertions.assertFalse(artifactIndex.contains("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824"));
+    }
+
+    @Test
+    public void inProgressTest() {
+        Assertions.assertTrue(artifactIndex.markInProgress("downloading.zip"));
+        Assertions.assertFalse(artifactIndex.markInProgress("downloading.zip"));
+        Assertions.assertTrue(artifactIndex.isInProgress("downloading.zip"));
+        // in progress files are not persisted ones
+        Assertions.assertFalse(artifactIndex.containsFileName("downloading.zip"));
+
+        artifactIndex.clearInProgress("downloading.zip");
+        Assertions.assertFalse(artifactIndex.isInProgress("downloading.zip"));
+    }
+
+    @Test
+    public void queryTest() {
+        List<String> checksums = Arrays.asList("00000000000000000000000000000001", "00000000000000000000000000000002",
+                "00000000000000000000000000000003");
+        try {
+            for (int i = 0; i < checksums.size(); i++) {
+                ArtifactMetadata artifact = new ArtifactMetadata(checksums.get(i), "query-test-" + (3 - i) + ".zip");
+                artifact.setSize(i);
+                artifact.setVersion(i == 0 ? "7.6.0" : "7.5.0");
+                artifactIndex.add(artifact);
+            }
+
+            ArtifactQuery byName = new ArtifactQuery().setNamePrefix("query-test-");
+            List<ArtifactMetadata> firstPage = artifactIndex.query(byName).limit(2).collect(Collectors.toList());
+            Assertions.assertEquals("query-test-1.zip", firstPage.get(0).getFileName());
+            Assertions.assertEquals("query-test-2.zip", firstPage.get(1).getFileName());
+
+            byName.setCursor(byName.cursorOf(firstPage.get(1)));
+            List<ArtifactMetadata> nextPage = artifactIndex.query(byName).collect(Collectors.toList());
+            Assertions.assertEquals(1, nextPage.size());
+            Assertions.assertEquals("query-test-3.zip", nextPage.get(0).getFileName());
+
+            ArtifactQuery bySize = new ArtifactQuery().setNamePrefix("query-test-").setVersion("7.5.0")
+                    .setSort(ArtifactQuery.Sort.SIZE).setDescending(true);
+            List<String> names = artifactIndex.query(bySize).map(ArtifactMetadata::getFileName).collect(Collectors.toList());
+            Assertions.assertEquals(Arrays.asList("query-test-1.zip", "query-test-2.zip"), names);
+
+            Assertions.assertThrows(IllegalArgumentException.class, () -> new ArtifactQuery().setCursor("not a cursor!"));
+        } finally {
+            checksums.forEach(artifactIndex::remove);
+        }
+    }
+
+    @Test
+    public void cursorOutsidePrefixTest() {
+        List<String> checksums = Arrays.asList("00000000000000000000000000000004", "00000000000000000000000000000005");
+        try {
+            for (int i = 0; i < checksums.size(); i++) {
+                artifactIndex.add(new ArtifactMetadata(checksums.get(i), "cursor-test-" + i + ".zip"));
+            }
+            String below = new ArtifactQuery().cursorOf(new ArtifactMetadata("00000000000000000000000000000000", "a.zip"));
+            String above = new ArtifactQuery().cursorOf(new ArtifactMetadata("00000000000000000000000000000000", "zzz.zip"));
+
+            // a cursor before the range lists all of it ascending and nothing descending, the other way round after it
+            Assertions.assertEquals(2, artifactIndex.query(new ArtifactQuery().setNamePrefix("cursor-test-").setCursor(below)).count());
+            Assertions.assertEquals(0, artifactIndex.query(new ArtifactQuery().setNamePrefix("cursor-test-").setCursor(above)).count());
+            Assertions.assertEquals(0, artifactIndex.query(new ArtifactQuery().setNamePrefix("cursor-test-").setCursor(below)
+                                                                   .setDescending(true)).count());
+            List<String> names = artifactIndex.query(new ArtifactQuery().setNamePrefix("cursor-test-").setCursor(above).setDescending(true))
+                    .map(ArtifactMetadata::getFileName).collect(Collectors.toList());
+            Assertions.assertEquals(Arrays.asList("cursor-test-1.zip", "cursor-test-0.zip"), names);
+        } finally {
+            checksums.forEach(artifactIndex::remove);
+        }
+    }
+}
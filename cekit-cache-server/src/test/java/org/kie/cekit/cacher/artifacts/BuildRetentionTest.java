@@ -0,0 +1,48 @@
+package org.kie.cekit.cacher.artifacts;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class BuildRetentionTest {
+
+    private final List<ArtifactMetadata> artifacts = Arrays.asList(
+            artifact("a", "20191208", "7.6.0", "master"),
+            artifact("b", "20191209", "7.6.0", "master"),
+            artifact("c", "20191210", "7.6.0", "master"),
+            artifact("d", "20191210", "7.6.0", "master"),
+            artifact("e", "20191201", "7.5.1", "7.5.x"),
+            artifact("f", null, null, null));
+
+    @Test
+    public void keepLastBuildsTest() {
+        Assertions.assertEquals(Collections.singletonList("a"),
+                                checksums(BuildRetention.expired(artifacts, 2, Collections.emptySet())));
+        // every build date of the same version and branch is a build, the other versions are kept apart
+        Assertions.assertEquals(Arrays.asList("a", "b"),
+                                checksums(BuildRetention.expired(artifacts, 1, Collections.emptySet())));
+    }
+
+    @Test
+    public void pinnedTest() {
+        Assertions.assertEquals(Collections.singletonList("b"),
+                                checksums(BuildRetention.expired(artifacts, 1, Collections.singleton("a"))));
+    }
+
+    private static ArtifactMetadata artifact(String checksum, String buildDate, String version, String branch) {
+        ArtifactMetadata artifact = new ArtifactMetadata(checksum, checksum + ".zip");
+        artifact.setBuildDate(buildDate);
+        artifact.setVersion(version);
+        artifact.setBranch(branch);
+        return artifact;
+    }
+
+    private static List<String> checksums(List<ArtifactMetadata> artifacts) {
+        return artifacts.stream().map(ArtifactMetadata::getChecksum).sorted().collect(Collectors.toList());
+    }
+}
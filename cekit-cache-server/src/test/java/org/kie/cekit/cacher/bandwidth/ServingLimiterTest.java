@@ -0,0 +1,98 @@
+package org.kie.cekit.cacher.bandwidth;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.objects.ServingStatus;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ServingLimiterTest {
+
+    @Test
+    public void perClientLimitTest() {
+        ServingLimiter limiter = limiter(10, 2);
+        Assertions.assertTrue(limiter.tryAcquire("10.0.0.1"));
+        Assertions.assertTrue(limiter.tryAcquire("10.0.0.1"));
+        Assertions.assertFalse(limiter.tryAcquire("10.0.0.1"));
+        // other clients are not affected
+        Assertions.assertTrue(limiter.tryAcquire("10.0.0.2"));
+
+        limiter.release("10.0.0.1");
+        Assertions.assertTrue(limiter.tryAcquire("10.0.0.1"));
+
+        ServingStatus status = limiter.status();
+        Assertions.assertEquals(3, status.getActiveTransfers());
+        Assertions.assertEquals(2, status.getClients().get("10.0.0.1").intValue());
+        Assertions.assertEquals(4, status.getAccepted());
+        Assertions.assertEquals(1, status.getRejectedClient());
+    }
+
+    @Test
+    public void globalLimitTest() {
+        ServingLimiter limiter = limiter(2, 2);
+        Assertions.assertTrue(limiter.tryAcquire("10.0.0.1"));
+        Assertions.assertTrue(limiter.tryAcquire("10.0.0.2"));
+        Assertions.assertFalse(limiter.tryAcquire("10.0.0.3"));
+        Assertions.assertEquals(1, limiter.status().getRejectedBusy());
+        // the client reservation is rolled back
+        Assertions.assertFalse(limiter.status().getClients().containsKey("10.0.0.3"));
+
+        limiter.release("10.0.0.1");
+        limiter.release("10.0.0.2");
+        Assertions.assertEquals(0, limiter.status().getActiveTransfers());
+        Assertions.assertTrue(limiter.status().getClients().isEmpty());
+        Assertions.assertTrue(limiter.tryAcquire("10.0.0.3"));
+    }
+
+    @Test
+    public void requestRateTest() {
+        ServingLimiter limiter = limiter(10, 10);
+        limiter.requests = new TokenBucket(2);
+        Assertions.assertTrue(limiter.tryAcquire("10.0.0.1"));
+        Assertions.assertTrue(limiter.tryAcquire("10.0.0.2"));
+        Assertions.assertFalse(limiter.tryAcquire("10.0.0.3"));
+
+        ServingStatus status = limiter.status();
+        Assertions.assertEquals(2, status.getMaxRequestRate());
+        Assertions.assertEquals(1, status.getRejectedRate());
+        // nothing is held by the rejected request
+        Assertions.assertEquals(2, status.getActiveTransfers());
+        Assertions.assertFalse(status.getClients().containsKey("10.0.0.3"));
+    }
+
+    @Test
+    public void concurrentAcquireTest() throws InterruptedException {
+        ServingLimiter limiter = limiter(8, 3);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        ExecutorService requests = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < 4000; i++) {
+            String client = "10.0.0." + i % 5;
+            requests.execute(() -> {
+                if (limiter.tryAcquire(client)) {
+                    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                    active.decrementAndGet();
+                    limiter.release(client);
+                }
+            });
+        }
+        requests.shutdown();
+        Assertions.assertTrue(requests.awaitTermination(30, TimeUnit.SECONDS));
+
+        ServingStatus status = limiter.status();
+        Assertions.assertTrue(maxActive.get() <= 8);
+        Assertions.assertEquals(0, status.getActiveTransfers());
+        Assertions.assertTrue(status.getClients().isEmpty());
+        Assertions.assertEquals(4000, status.getAccepted() + status.getRejectedBusy() + status.getRejectedClient());
+    }
+
+    private ServingLimiter limiter(int maxTransfers, int maxPerClient) {
+        ServingLimiter limiter = new ServingLimiter();
+        limiter.maxTransfers = maxTransfers;
+        limiter.maxPerClient = maxPerClient;
+        return limiter;
+    }
+}
@@ -0,0 +1,55 @@
+package org.kie.cekit.cacher.bandwidth;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void unlimitedTest() {
+        TokenBucket bucket = new TokenBucket(0);
+        Assertions.assertEquals(0, bucket.take(Long.MAX_VALUE / 2, 0));
+    }
+
+    @Test
+    public void rateTest() {
+        TokenBucket bucket = new TokenBucket(1000);
+        long now = System.nanoTime();
+        // starts full, one second worth of bytes
+        Assertions.assertEquals(0, bucket.take(1000, now));
+        // the debt of 500 bytes takes half a second to pay back
+        Assertions.assertEquals(SECOND / 2, bucket.take(500, now));
+        // half a second later the debt is paid
+        Assertions.assertEquals(0, bucket.take(0, now + SECOND / 2));
+        // tokens never exceed one second worth of bytes
+        Assertions.assertEquals(SECOND, bucket.take(2000, now + 10 * SECOND));
+    }
+
+    @Test
+    public void setRateTest() {
+        TokenBucket bucket = new TokenBucket(1000);
+        long now = System.nanoTime();
+        bucket.setRate(100);
+        Assertions.assertEquals(100, bucket.getRate());
+        Assertions.assertTrue(bucket.take(200, now) >= SECOND);
+        bucket.setRate(0);
+        Assertions.assertEquals(0, bucket.take(1_000_000, now));
+    }
+
+    @Test
+    public void tryTakeTest() {
+        TokenBucket bucket = new TokenBucket(2);
+        long now = System.nanoTime();
+        Assertions.assertTrue(bucket.tryTake(1, now));
+        Assertions.assertTrue(bucket.tryTake(1, now));
+        Assertions.assertFalse(bucket.tryTake(1, now));
+        // a refused take does not go into debt
+        Assertions.assertFalse(bucket.tryTake(1, now + SECOND / 4));
+        Assertions.assertTrue(bucket.tryTake(1, now + SECOND / 2));
+        Assertions.assertTrue(new TokenBucket(0).tryTake(Long.MAX_VALUE, now));
+    }
+}
@@ -0,0 +1,362 @@
+package org.kie.cekit.cacher.downloads;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.bandwidth.BandwidthShaper;
+import org.kie.cekit.cacher.http.Destination;
+import org.kie.cekit.cacher.objects.UpstreamHostStatus;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.ArtifactDigester;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+public class ArtifactDownloaderTest {
+
+    private final byte[] content = new byte[64 * 1024];
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    private boolean acceptRanges = true;
+    // answers every range request from the start of the file
+    private boolean wrongRanges = false;
+    // status answered to every range request, 0 to answer them
+    private int rangeStatus = 0;
+    private HttpServer server;
+    private Path tmpDir;
+    private String url;
+
+    @BeforeEach
+    public void start() throws IOException {
+        new Random(7).nextBytes(content);
+        tmpDir = Files.createTempDirectory("downloader");
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/artifact.zip", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            ranges.add(range);
+            if (null != range && rangeStatus > 0) {
+                exchange.sendResponseHeaders(rangeStatus, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            int offset = 0;
+            int end = content.length;
+            if (acceptRanges) {
+                exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+                if (null != range && "\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+                    String[] bounds = range.substring("bytes=".length()).split("-");
+                    offset = Integer.parseInt(bounds[0]);
+                    end = bounds.length > 1 ? Integer.parseInt(bounds[1]) + 1 : content.length;
+                    if (wrongRanges) {
+                        end -= offset;
+                        offset = 0;
+                    }
+                    exchange.getResponseHeaders().add("Content-Range", "bytes " + offset + "-" + (end - 1) + "/" + content.length);
+                }
+            }
+            boolean partial = null != range && exchange.getResponseHeaders().containsKey("Content-Range");
+            exchange.sendResponseHeaders(partial ? 206 : 200, end - offset);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(content, offset, end - offset);
+            } catch (IOException e) {
+                // client stopped reading, i.e. the first request of a segmented download
+            }
+        });
+        // a mirror that answers probes quickly but fails the transfers
+        server.createContext("/flaky/artifact.zip", exchange -> {
+            exchange.sendResponseHeaders("HEAD".equals(exchange.getRequestMethod()) ? 200 : 503, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/artifact.zip";
+    }
+
+    @AfterEach
+    public void stop() throws IOException {
+        server.stop(0);
+        for (String name : tmpDir.toFile().list()) {
+            Files.delete(tmpDir.resolve(name));
+        }
+        Files.delete(tmpDir);
+    }
+
+    @Test
+    public void resumeTest() throws IOException {
+        Path target = interruptedDownload();
+
+        ArtifactDigester digester = new ArtifactDigester();
+        Assertions.assertEquals(content.length, downloader().download(url, target, digester, Optional.empty(), Segments.SINGLE));
+
+        Assertions.assertEquals("bytes=1000-", ranges.get(ranges.size() - 1));
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(md5(content), digester.md5());
+        Assertions.assertFalse(downloader().isResumable(target));
+    }
+
+    @Test
+    public void rangeNotSupportedTest() throws IOException {
+        Path target = interruptedDownload();
+        acceptRanges = false;
+
+        ArtifactDigester digester = new ArtifactDigester();
+        downloader().download(url, target, digester, Optional.empty(), Segments.SINGLE);
+
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(md5(content), digester.md5());
+    }
+
+    @Test
+    public void resumeWrongRangeTest() throws IOException {
+        Path target = interruptedDownload();
+        wrongRanges = true;
+
+        ArtifactDigester digester = new ArtifactDigester();
+        Assertions.assertEquals(content.length, downloader().download(url, target, digester, Optional.empty(), Segments.SINGLE));
+
+        // the partial answer does not start at the offset, the download starts over
+        Assertions.assertNull(ranges.get(ranges.size() - 1));
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(md5(content), digester.md5());
+    }
+
+    @Test
+    public void resumeRangeNotSatisfiableTest() throws IOException {
+        Path target = interruptedDownload();
+        rangeStatus = 416;
+
+        ArtifactDigester digester = new ArtifactDigester();
+        Assertions.assertEquals(content.length, downloader().download(url, target, digester, Optional.empty(), Segments.SINGLE));
+
+        // the partial file is dropped and the download starts over
+        Assertions.assertNull(ranges.get(ranges.size() - 1));
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(md5(content), digester.md5());
+        Assertions.assertFalse(downloader().isResumable(target));
+    }
+
+    @Test
+    public void completeTmpFileTest() throws IOException {
+        Path target = tmpFile(content.length, "\"v1\"");
+        int requests = ranges.size();
+
+        ArtifactDigester digester = new ArtifactDigester();
+        Assertions.assertEquals(content.length, downloader().download(url, target, digester, Optional.empty(), Segments.SINGLE));
+
+        // only the last byte is asked to check the upstream did not change
+        Assertions.assertEquals(Collections.singletonList("bytes=65535-65535"), ranges.subList(requests, ranges.size()));
+        Assertions.assertEquals(md5(content), digester.md5());
+    }
+
+    @Test
+    public void completeTmpFileChangedTest() throws IOException {
+        // downloaded from another version of the upstream file
+        Path target = tmpFile(content.length, "\"v0\"");
+
+        ArtifactDigester digester = new ArtifactDigester();
+        Assertions.assertEquals(content.length, downloader().download(url, target, digester, Optional.empty(), Segments.SINGLE));
+
+        Assertions.assertNull(ranges.get(ranges.size() - 1));
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(md5(content), digester.md5());
+    }
+
+    @Test
+    public void contentRangeTest() {
+        Assertions.assertTrue(Upstream.matches("bytes 1000-65535/65536", 1000, -1));
+        Assertions.assertTrue(Upstream.matches("bytes 1000-65535/*", 1000, -1));
+        Assertions.assertTrue(Upstream.matches("bytes 10240-20479/65536", 10240, 20479));
+        Assertions.assertFalse(Upstream.matches("bytes 0-65535/65536", 1000, -1));
+        Assertions.assertFalse(Upstream.matches("bytes 1000-2000/65536", 1000, -1));
+        Assertions.assertFalse(Upstream.matches("bytes 10240-15000/65536", 10240, 20479));
+        Assertions.assertFalse(Upstream.matches("bytes */65536", 1000, -1));
+        Assertions.assertFalse(Upstream.matches(null, 1000, -1));
+    }
+
+    @Test
+    public void segmentedTest() throws IOException {
+        Path target = tmpDir.resolve("artifact.zip");
+        ArtifactDigester digester = new ArtifactDigester();
+        Assertions.assertEquals(content.length,
+                downloader().download(url, target, digester, Optional.empty(), new Segments(3, 10 * 1024)));
+
+        // the first segment is read from the initial request, the other 6 are range requests
+        Assertions.assertEquals(7, ranges.size());
+        Assertions.assertTrue(ranges.contains("bytes=61440-65535"));
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(md5(content), digester.md5());
+    }
+
+    @Test
+    public void segmentedRangeNotSupportedTest() throws IOException {
+        acceptRanges = false;
+        Path target = tmpDir.resolve("artifact.zip");
+        ArtifactDigester digester = new ArtifactDigester();
+        downloader().download(url, target, digester, Optional.empty(), new Segments(3, 10 * 1024));
+
+        Assertions.assertEquals(1, ranges.size());
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(md5(content), digester.md5());
+    }
+
+    @Test
+    public void segmentedWrongRangeTest() throws IOException {
+        wrongRanges = true;
+        Path target = tmpDir.resolve("artifact.zip");
+        ArtifactDigester digester = new ArtifactDigester();
+        downloader().download(url, target, digester, Optional.empty(), new Segments(3, 10 * 1024));
+
+        // the segments are given up for a single connection
+        Assertions.assertNull(ranges.get(ranges.size() - 1));
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(md5(content), digester.md5());
+    }
+
+    @Test
+    public void mirrorFailoverTest() throws IOException {
+        String base = "http://localhost:" + server.getAddress().getPort() + "/";
+        // another host name for the same server, so each mirror has its own circuit
+        String flakyBase = "http://127.0.0.1:" + server.getAddress().getPort() + "/flaky/";
+        ArtifactDownloader downloader = downloader();
+        // the good mirror answers the probes slowly, so the flaky one is tried first
+        server.removeContext("/artifact.zip");
+        server.createContext("/artifact.zip", exchange -> {
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, content.length);
+                exchange.getResponseBody().write(content);
+            }
+            exchange.close();
+        });
+        downloader.cacherProperties = new CacherProperties();
+        downloader.mirrorSelector = mirrorSelector(downloader, base, flakyBase);
+
+        String flaky = flakyBase + "artifact.zip";
+        // nothing measured yet, ranked in the group order while the probes run
+        Assertions.assertEquals(Arrays.asList(url, flaky), downloader.mirrorSelector.sources(url));
+        Assertions.assertEquals(Arrays.asList(flaky, url), probedSources(downloader.mirrorSelector, url));
+
+        Path target = tmpDir.resolve("artifact.zip");
+        ArtifactDigester digester = new ArtifactDigester();
+        Assertions.assertEquals(content.length, downloader.download(flaky, target, digester, Optional.empty()));
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(md5(content), digester.md5());
+
+        // the failed mirror is ranked last
+        Assertions.assertEquals(Arrays.asList(url, flaky), downloader.mirrorSelector.sources(flaky));
+        // each outcome counts on the circuit of the host the transfer was tried against
+        Assertions.assertEquals(1, hostStatus(downloader, "127.0.0.1").getFailures());
+        Assertions.assertEquals(0, hostStatus(downloader, "127.0.0.1").getSuccesses());
+        Assertions.assertEquals(1, hostStatus(downloader, "localhost").getSuccesses());
+
+        // a mirror whose circuit is open is not tried
+        for (int i = 1; i < new CacherProperties().downloadBreakerFailures(); i++) {
+            downloader.upstreamHealth.acquire("127.0.0.1");
+            downloader.upstreamHealth.record("127.0.0.1", true, "timeout");
+        }
+        Assertions.assertEquals(CircuitBreaker.OPEN, hostStatus(downloader, "127.0.0.1").getState());
+        // forget the failure, so the flaky mirror is ranked first again
+        downloader.mirrorSelector = mirrorSelector(downloader, base, flakyBase);
+        Assertions.assertEquals(Arrays.asList(flaky, url), probedSources(downloader.mirrorSelector, url));
+        Assertions.assertEquals(content.length, downloader.download(flaky, target, new ArtifactDigester(), Optional.empty()));
+        Assertions.assertEquals(1, hostStatus(downloader, "127.0.0.1").getRejected());
+        Assertions.assertEquals(2, hostStatus(downloader, "localhost").getSuccesses());
+    }
+
+    private static MirrorSelector mirrorSelector(ArtifactDownloader downloader, String... bases) {
+        MirrorSelector mirrorSelector = new MirrorSelector();
+        mirrorSelector.groups = Collections.singletonList(Arrays.asList(bases));
+        mirrorSelector.probeClient = downloader.httpClient;
+        return mirrorSelector;
+    }
+
+    /**
+     * @return the sources of the url once the probes it started answered
+     */
+    private static List<String> probedSources(MirrorSelector mirrorSelector, String url) {
+        mirrorSelector.sources(url);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mirrorSelector.probing() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return mirrorSelector.sources(url);
+    }
+
+    private static UpstreamHostStatus hostStatus(ArtifactDownloader downloader, String host) {
+        return downloader.upstreamHealth.hosts().stream().filter(status -> host.equals(status.getHost())).findFirst().get();
+    }
+
+    @Test
+    public void abortTest() throws IOException {
+        ArtifactDownloader downloader = downloader();
+        Path target = interruptedDownload();
+        downloader.abort(target);
+        Assertions.assertTrue(Files.exists(target));
+        Assertions.assertEquals(1, downloader.interrupted(tmpDir).size());
+
+        Files.delete(tmpDir.resolve("artifact.zip" + ArtifactDownloader.RESUME_SUFFIX));
+        downloader.abort(target);
+        Assertions.assertFalse(Files.exists(target));
+    }
+
+    /**
+     * Simulates a download interrupted after 1000 bytes
+     */
+    private Path interruptedDownload() throws IOException {
+        return tmpFile(1000, "\"v1\"");
+    }
+
+    /**
+     * @return the tmp file of a download stopped after the given length, with its resume record
+     */
+    private Path tmpFile(int length, String etag) throws IOException {
+        Path target = tmpDir.resolve("artifact.zip");
+        downloader().download(url, target, new ArtifactDigester(), Optional.empty(), Segments.SINGLE);
+        // the record is removed once complete, write it again as it was while downloading
+        String record = "{\"expectedLength\":" + content.length + ",\"etag\":\"" + etag.replace("\"", "\\\"") + "\",\"url\":\"" + url + "\"}";
+        Files.write(tmpDir.resolve("artifact.zip" + ArtifactDownloader.RESUME_SUFFIX), record.getBytes(StandardCharsets.UTF_8));
+        Files.write(target, Arrays.copyOf(content, length));
+        return target;
+    }
+
+    private ArtifactDownloader downloader() {
+        ArtifactDownloader downloader = new ArtifactDownloader();
+        downloader.downloadTracker = new DownloadTracker();
+        downloader.httpClient = new OkHttpClient.Builder().protocols(Destination.ARTIFACTS.protocols()).build();
+        downloader.bandwidthShaper = new BandwidthShaper();
+        downloader.upstreamHealth = new UpstreamHealth();
+        downloader.upstreamHealth.cacherProperties = new CacherProperties();
+        return downloader;
+    }
+
+    private String md5(byte[] bytes) {
+        ArtifactDigester digester = new ArtifactDigester();
+        digester.update(ByteBuffer.wrap(bytes));
+        return digester.md5();
+    }
+}
@@ -0,0 +1,85 @@
+package org.kie.cekit.cacher.downloads;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterConsecutiveFailuresTest() {
+        CircuitBreaker breaker = new CircuitBreaker("example.com", 2, 1000);
+        Assertions.assertEquals(0, breaker.acquire(0));
+        breaker.failure("timeout", 0);
+        Assertions.assertEquals(CircuitBreaker.CLOSED, breaker.state(0));
+        Assertions.assertEquals(0, breaker.acquire(10));
+        breaker.failure("timeout", 10);
+        Assertions.assertEquals(CircuitBreaker.OPEN, breaker.state(10));
+
+        // rejected until the open period is over
+        Assertions.assertEquals(990, breaker.acquire(20));
+        Assertions.assertEquals(1, breaker.toStatus(20).getRejected());
+        Assertions.assertEquals(1, breaker.toStatus(20).getOpened());
+    }
+
+    @Test
+    public void waitTimeTest() {
+        CircuitBreaker breaker = new CircuitBreaker("example.com", 1, 1000);
+        Assertions.assertEquals(0, breaker.waitTime(0));
+        breaker.acquire(0);
+        breaker.failure("timeout", 0);
+        Assertions.assertEquals(900, breaker.waitTime(100));
+        // nothing acquired
+        Assertions.assertEquals(0, breaker.toStatus(100).getRejected());
+
+        Assertions.assertEquals(0, breaker.waitTime(1000));
+        breaker.acquire(1000);
+        // the trial is running
+        Assertions.assertEquals(1000, breaker.waitTime(1000));
+    }
+
+    @Test
+    public void halfOpenTrialTest() {
+        CircuitBreaker breaker = new CircuitBreaker("example.com", 1, 1000);
+        breaker.acquire(0);
+        breaker.failure("timeout", 0);
+
+        // a single trial goes through
+        Assertions.assertEquals(0, breaker.acquire(1000));
+        Assertions.assertEquals(CircuitBreaker.HALF_OPEN, breaker.state(1000));
+        Assertions.assertTrue(breaker.acquire(1000) > 0);
+
+        // a failed trial opens the circuit again
+        breaker.failure("timeout", 1100);
+        Assertions.assertEquals(CircuitBreaker.OPEN, breaker.state(1100));
+
+        Assertions.assertEquals(0, breaker.acquire(2100));
+        breaker.success();
+        Assertions.assertEquals(CircuitBreaker.CLOSED, breaker.state(2100));
+        Assertions.assertEquals(0, breaker.toStatus(2100).getConsecutiveFailures());
+        Assertions.assertEquals(0, breaker.acquire(2100));
+    }
+
+    @Test
+    public void retryDelayTest() {
+        for (int attempt = 1; attempt <= 4; attempt++) {
+            long max = 1000L << (attempt - 1);
+            long delay = UpstreamHealth.retryDelay(1000, attempt);
+            Assertions.assertTrue(delay >= max / 2 && delay <= max, "attempt " + attempt + " delay " + delay);
+        }
+        Assertions.assertTrue(UpstreamHealth.retryDelay(1000, 40) <= 10 * 60 * 1000);
+    }
+
+    @Test
+    public void transientErrorsTest() {
+        Assertions.assertTrue(UpstreamException.isTransient(new UpstreamException("http://example.com/a.zip", 503)));
+        Assertions.assertTrue(UpstreamException.isTransient(new UpstreamException("http://example.com/a.zip", 429)));
+        Assertions.assertTrue(UpstreamException.isTransient(new SocketTimeoutException()));
+        Assertions.assertTrue(UpstreamException.isTransient(new IOException("Connection reset")));
+        Assertions.assertFalse(UpstreamException.isTransient(new UpstreamException("http://example.com/a.zip", 404)));
+        Assertions.assertFalse(UpstreamException.isTransient(new FileNotFoundException()));
+    }
+}
@@ -0,0 +1,86 @@
+package org.kie.cekit.cacher.downloads;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Optional;
+
+public class DownloadQueueTest {
+
+    @Test
+    public void priorityOrderTest() {
+        DownloadQueue queue = new DownloadQueue(1, 1, Collections.emptyMap());
+        queue.offer(task(1, "http://a.example.com/preload.zip", DownloadPriority.PRELOAD));
+        queue.offer(task(2, "http://b.example.com/nightly.zip", DownloadPriority.NIGHTLY));
+        queue.offer(task(3, "http://c.example.com/manual.zip", DownloadPriority.MANUAL));
+
+        DownloadTask first = queue.poll();
+        Assertions.assertEquals(DownloadPriority.MANUAL, first.getPriority());
+        // global limit reached
+        Assertions.assertNull(queue.poll());
+
+        queue.done(first);
+        DownloadTask second = queue.poll();
+        Assertions.assertEquals(DownloadPriority.NIGHTLY, second.getPriority());
+        queue.done(second);
+        Assertions.assertEquals(DownloadPriority.PRELOAD, queue.poll().getPriority());
+    }
+
+    @Test
+    public void perHostLimitTest() {
+        DownloadQueue queue = new DownloadQueue(10, 1, Collections.singletonMap("fast.example.com", 2));
+        queue.offer(task(1, "http://slow.example.com/a.zip", DownloadPriority.MANUAL));
+        queue.offer(task(2, "http://slow.example.com/b.zip", DownloadPriority.MANUAL));
+        queue.offer(task(3, "http://fast.example.com/c.zip", DownloadPriority.PRELOAD));
+        queue.offer(task(4, "http://fast.example.com/d.zip", DownloadPriority.PRELOAD));
+        queue.offer(task(5, "http://fast.example.com/e.zip", DownloadPriority.PRELOAD));
+
+        DownloadTask slow = queue.poll();
+        Assertions.assertEquals("http://slow.example.com/a.zip", slow.getUrl());
+        // second slow host download waits, lower priority downloads from other hosts can start
+        Assertions.assertEquals("http://fast.example.com/c.zip", queue.poll().getUrl());
+        Assertions.assertEquals("http://fast.example.com/d.zip", queue.poll().getUrl());
+        Assertions.assertNull(queue.poll());
+        Assertions.assertEquals(5, queue.tasks().size());
+
+        queue.done(slow);
+        Assertions.assertEquals("http://slow.example.com/b.zip", queue.poll().getUrl());
+    }
+
+    @Test
+    public void promoteTest() {
+        DownloadQueue queue = new DownloadQueue(1, 1, Collections.emptyMap());
+        DownloadTask nightly = task(1, "http://a.example.com/nightly.zip", DownloadPriority.NIGHTLY);
+        DownloadTask preload = task(2, "http://b.example.com/preload.zip", DownloadPriority.PRELOAD);
+        queue.offer(nightly);
+        queue.offer(preload);
+
+        queue.promote(preload, DownloadPriority.MANUAL);
+        // never demoted
+        queue.promote(preload, DownloadPriority.PRELOAD);
+        Assertions.assertEquals(DownloadPriority.MANUAL, preload.getPriority());
+        Assertions.assertSame(preload, queue.poll());
+    }
+
+    @Test
+    public void startTest() {
+        DownloadQueue queue = new DownloadQueue(2, 1, Collections.emptyMap());
+        DownloadTask queued = task(1, "http://a.example.com/queued.zip", DownloadPriority.PRELOAD);
+        queue.offer(queued);
+
+        // started ahead of the queued task
+        Assertions.assertTrue(queue.start(task(2, "http://a.example.com/read-through.zip", DownloadPriority.MANUAL)));
+        // host limit reached
+        Assertions.assertFalse(queue.start(task(3, "http://a.example.com/other.zip", DownloadPriority.MANUAL)));
+        Assertions.assertNull(queue.poll());
+        Assertions.assertTrue(queue.start(task(4, "http://b.example.com/read-through.zip", DownloadPriority.MANUAL)));
+        // global limit reached
+        Assertions.assertFalse(queue.start(task(5, "http://c.example.com/read-through.zip", DownloadPriority.MANUAL)));
+        Assertions.assertEquals(3, queue.tasks().size());
+    }
+
+    private DownloadTask task(long sequence, String url, DownloadPriority priority) {
+        return new DownloadTask(sequence, url, priority, Optional.empty());
+    }
+}
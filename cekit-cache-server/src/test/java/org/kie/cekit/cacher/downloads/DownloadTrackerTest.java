@@ -0,0 +1,61 @@
+package org.kie.cekit.cacher.downloads;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.objects.DownloadStatus;
+import org.kie.cekit.cacher.objects.FetchResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class DownloadTrackerTest {
+
+    @Test
+    public void progressTest() {
+        DownloadTracker tracker = new DownloadTracker();
+        List<DownloadStatus> events = new ArrayList<>();
+        tracker.subscribe(events::add);
+
+        String url = "http://download.example.com/artifact.zip";
+        DownloadTask task = new DownloadTask(1, url, DownloadPriority.MANUAL, Optional.empty());
+        tracker.queued(task);
+        task.started();
+        tracker.started(task);
+        tracker.transferStarted(url, 1000, 200);
+        tracker.received(url, 300);
+
+        DownloadStatus running = task.toStatus();
+        Assertions.assertEquals(DownloadStatus.RUNNING, running.getState());
+        Assertions.assertEquals(500, running.getBytesReceived());
+        Assertions.assertEquals(1000, running.getTotalBytes());
+
+        tracker.finished(task, FetchResult.persisted("artifact.zip", "5d41402abc4b2a76b9719d911017c592"));
+        DownloadStatus finished = tracker.finished().get(0);
+        Assertions.assertEquals(DownloadStatus.COMPLETED, finished.getState());
+        Assertions.assertEquals("5d41402abc4b2a76b9719d911017c592", finished.getChecksum());
+        Assertions.assertEquals(-1, finished.getEtaSeconds());
+
+        Assertions.assertEquals(DownloadStatus.QUEUED, events.get(0).getState());
+        Assertions.assertEquals(DownloadStatus.COMPLETED, events.get(events.size() - 1).getState());
+
+        // progress after the end is ignored
+        tracker.received(url, 100);
+        Assertions.assertEquals(500, tracker.finished().get(0).getBytesReceived());
+    }
+
+    @Test
+    public void unsubscribeTest() {
+        DownloadTracker tracker = new DownloadTracker();
+        List<DownloadStatus> events = new ArrayList<>();
+        tracker.subscribe(status -> events.add(status) && events.size() < 1);
+
+        DownloadTask task = new DownloadTask(1, "http://download.example.com/a.zip", DownloadPriority.PRELOAD, Optional.empty());
+        tracker.queued(task);
+        tracker.failed(task, "Server returned HTTP 404");
+
+        Assertions.assertEquals(1, events.size());
+        Assertions.assertEquals("Server returned HTTP 404", tracker.finished().get(0).getError());
+        Assertions.assertEquals(DownloadStatus.FAILED, tracker.finished().get(0).getState());
+    }
+}
@@ -0,0 +1,29 @@
+package org.kie.cekit.cacher.downloads;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class MirrorSelectorTest {
+
+    @Test
+    public void unmeasuredMirrorTest() {
+        MirrorSelector mirrorSelector = new MirrorSelector();
+        // file urls are never probed
+        mirrorSelector.groups = Collections.singletonList(Arrays.asList("file:/unmeasured/", "file:/fast/", "file:/slow/"));
+        String path = "artifact.zip";
+        mirrorSelector.transferred("file:/fast/" + path, 100 * 1024 * 1024, 1000);
+        mirrorSelector.transferred("file:/slow/" + path, 100 * 1024 * 1024, 10000);
+
+        // ranked as the median of the group, between the measured ones
+        Assertions.assertEquals(Arrays.asList("file:/fast/" + path, "file:/unmeasured/" + path, "file:/slow/" + path),
+                                mirrorSelector.sources("file:/slow/" + path));
+
+        // a measured mirror faster than the median moves ahead of it
+        mirrorSelector.transferred("file:/unmeasured/" + path, 100 * 1024 * 1024, 500);
+        Assertions.assertEquals(Arrays.asList("file:/unmeasured/" + path, "file:/fast/" + path, "file:/slow/" + path),
+                                mirrorSelector.sources("file:/slow/" + path));
+    }
+}
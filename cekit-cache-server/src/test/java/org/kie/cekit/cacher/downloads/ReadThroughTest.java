@@ -0,0 +1,63 @@
+package org.kie.cekit.cacher.downloads;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.objects.FetchResult;
+
+import javax.inject.Inject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+@QuarkusTest
+public class ReadThroughTest {
+
+    // md5 of "never sent"
+    private static final String CHECKSUM = "33c0651fa0b913cc3c2896a316bcac3c";
+
+    @Inject
+    ReadThrough readThrough;
+
+    @Inject
+    DownloadScheduler downloadScheduler;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    private Path upstream;
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        Files.deleteIfExists(upstream);
+    }
+
+    @Test
+    public void unsentTransferTest() throws IOException {
+        upstream = Files.createTempFile("read-through", ".txt");
+        Files.write(upstream, "never sent".getBytes(StandardCharsets.UTF_8));
+        String url = upstream.toUri().toString();
+        String fileName = upstream.getFileName().toString();
+
+        ReadThrough.Transfer transfer = readThrough.open(url, CHECKSUM).get();
+        CompletableFuture<FetchResult> fetch = downloadScheduler.inFlight(url).get();
+        // the client went away before the response was written
+        transfer.close();
+
+        Assertions.assertEquals(FetchResult.Status.FAILED, fetch.join().getStatus());
+        Assertions.assertFalse(downloadScheduler.inFlight(url).isPresent());
+        Assertions.assertTrue(artifactIndex.markInProgress(fileName));
+        artifactIndex.clearInProgress(fileName);
+        Assertions.assertThrows(IOException.class, () -> transfer.writeTo(new ByteArrayOutputStream()));
+
+        // nothing is started while waiting
+        Assertions.assertEquals(Optional.empty(), readThrough.await(url));
+        Assertions.assertFalse(downloadScheduler.inFlight(url).isPresent());
+    }
+}
@@ -4,6 +4,7 @@ import io.quarkus.test.junit.QuarkusTest;
 import org.junit.jupiter.api.Assertions;
 
 import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.http.Destination;
 
 import javax.inject.Inject;
 
@@ -27,4 +28,18 @@ public class CacherPropertiesTest {
     public void verifyCustomShortenedVersion() {
         Assertions.assertEquals("7.9", cacherProperties.shortenedVersion("7.9"));
     }
+
+    @Test
+    public void verifyHttpTimeouts() {
+        Assertions.assertEquals(30, cacherProperties.httpConnectTimeout(Destination.ARTIFACTS));
+        Assertions.assertEquals(0, cacherProperties.httpCallTimeout(Destination.ARTIFACTS));
+        Assertions.assertEquals(60, cacherProperties.httpCallTimeout(Destination.GITHUB));
+
+        CacherProperties configured = new CacherProperties();
+        configured.httpBuildsReadTimeout = "90";
+        configured.httpWebhookCallTimeout = "-1";
+        Assertions.assertEquals(90, configured.httpReadTimeout(Destination.BUILDS));
+        Assertions.assertEquals(30, configured.httpReadTimeout(Destination.GITHUB));
+        Assertions.assertEquals(30, configured.httpCallTimeout(Destination.WEBHOOK));
+    }
 }
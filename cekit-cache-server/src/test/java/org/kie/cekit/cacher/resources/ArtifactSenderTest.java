@@ -0,0 +1,164 @@
+package org.kie.cekit.cacher.resources;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.RestAssured;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.kie.cekit.cacher.utils.CacherUtils;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+
+@QuarkusTest
+public class ArtifactSenderTest {
+
+    @Inject
+    CacherUtils cacherUtils;
+
+    @Inject
+    ArtifactSender artifactSender;
+
+    @Test
+    public void sendfileTest() throws Exception {
+        Path upstream = Files.createTempFile("sendfile", ".txt");
+        Files.write(upstream, "sent with sendfile".getBytes(StandardCharsets.UTF_8));
+        String checksum = md5(upstream);
+        try {
+            given()
+                    .queryParam("url", upstream.toUri().toString())
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(200);
+
+            // a change of the server would fall back to copying
+            long before = artifactSender.sendfileTransfers();
+            given()
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(200)
+                    .body(is("sent with sendfile"));
+            Assertions.assertEquals(before + 1, artifactSender.sendfileTransfers());
+
+            given()
+                    .header("Range", "bytes=10-")
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(206)
+                    .body(is("sendfile"));
+            Assertions.assertEquals(before + 2, artifactSender.sendfileTransfers());
+
+            // not up to the end, copied
+            given()
+                    .header("Range", "bytes=0-3")
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(206)
+                    .body(is("sent"));
+            Assertions.assertEquals(before + 2, artifactSender.sendfileTransfers());
+        } finally {
+            Files.deleteIfExists(upstream);
+            cacherUtils.deleteArtifact(checksum);
+        }
+    }
+
+    /**
+     * Compares sending a whole artifact, with sendfile, with sending all of it but its last byte, which is copied.
+     * Run it with:
+     * mvn test -Dtest=ArtifactSenderTest -Dcacher.benchmark=true [-Dcacher.benchmark.sizes=100,500,2000]
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "cacher.benchmark", matches = "true")
+    public void sendfileVersusCopyBenchmark() throws Exception {
+        for (String size : System.getProperty("cacher.benchmark.sizes", "100,500,2000").split(",")) {
+            long bytes = Long.parseLong(size.trim()) * 1024 * 1024;
+            Path upstream = createSourceFile(bytes);
+            String checksum = md5(upstream);
+            try {
+                // read through once to persist it
+                Assertions.assertEquals(bytes, read(checksum + "?url=" + URLEncoder.encode(upstream.toUri().toString(), "UTF-8"), null));
+
+                long start = System.nanoTime();
+                Assertions.assertEquals(bytes, read(checksum, null));
+                long sendfileMillis = (System.nanoTime() - start) / 1_000_000;
+
+                start = System.nanoTime();
+                Assertions.assertEquals(bytes - 1, read(checksum, "bytes=0-" + (bytes - 2)));
+                long copyMillis = (System.nanoTime() - start) / 1_000_000;
+
+                System.out.println(String.format("%s MB: sendfile %d ms, copy %d ms", size.trim(), sendfileMillis, copyMillis));
+            } finally {
+                Files.deleteIfExists(upstream);
+                cacherUtils.deleteArtifact(checksum);
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes received
+     */
+    private long read(String resource, String range) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + RestAssured.port + "/resource/" + resource).openConnection();
+        if (null != range) {
+            connection.setRequestProperty("Range", range);
+        }
+        long received = 0;
+        try (InputStream input = connection.getInputStream()) {
+            byte[] buffer = new byte[256 * 1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                received += read;
+            }
+        } finally {
+            connection.disconnect();
+        }
+        return received;
+    }
+
+    private Path createSourceFile(long bytes) throws IOException {
+        Path file = Files.createTempFile("sender-benchmark", ".bin");
+        Random random = new Random();
+        ByteBuffer buffer = ByteBuffer.allocate(256 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            long written = 0;
+            while (written < bytes) {
+                random.nextBytes(buffer.array());
+                buffer.limit((int) Math.min(buffer.capacity(), bytes - written));
+                written += channel.write(buffer);
+                buffer.clear();
+            }
+        }
+        return file;
+    }
+
+    private String md5(Path file) throws Exception {
+        MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+        try (InputStream input = Files.newInputStream(file)) {
+            byte[] block = new byte[256 * 1024];
+            int length;
+            while ((length = input.read(block)) > 0) {
+                messageDigest.update(block, 0, length);
+            }
+        }
+        StringBuilder result = new StringBuilder();
+        for (byte b : messageDigest.digest()) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+}
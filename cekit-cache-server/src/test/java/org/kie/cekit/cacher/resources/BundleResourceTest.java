@@ -0,0 +1,146 @@
+package org.kie.cekit.cacher.resources;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.utils.CacherUtils;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+
+@QuarkusTest
+public class BundleResourceTest {
+
+    // md5 of "first in the tar" and "second"
+    private static final String FIRST = "df08f17a4eb1a9d64a4821698dc1ec6a";
+    private static final String SECOND = "a9f0e61a137d86aa9db53465e0801612";
+
+    @Inject
+    CacherUtils cacherUtils;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    private Path first;
+    private Path second;
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        cacherUtils.deleteArtifact(FIRST);
+        cacherUtils.deleteArtifact(SECOND);
+        Files.deleteIfExists(first);
+        Files.deleteIfExists(second);
+    }
+
+    @Test
+    public void bundleTest() throws IOException {
+        first = persist("bundle-first", "first in the tar", FIRST);
+        second = persist("bundle-second", "second", SECOND);
+
+        byte[] tar = given()
+                .contentType("application/json")
+                .body(Arrays.asList(FIRST, SECOND, FIRST))
+                .when().post("/resource/bundle")
+                .then()
+                .statusCode(200)
+                .header("Content-Type", ArtifactSender.TAR)
+                .header("Content-Length", String.valueOf(2 * 1024 + 1024))
+                .extract().asByteArray();
+
+        Map<String, String> entries = untar(tar);
+        Assertions.assertEquals(2, entries.size());
+        Assertions.assertEquals("first in the tar", entries.get(FIRST + "/" + first.getFileName()));
+        Assertions.assertEquals("second", entries.get(SECOND + "/" + second.getFileName()));
+
+        byte[] byName = given()
+                .queryParam("name", first.getFileName().toString())
+                .when().get("/resource/bundle")
+                .then()
+                .statusCode(200)
+                .extract().asByteArray();
+        Assertions.assertEquals(1, untar(byName).size());
+
+        given()
+                .contentType("application/json")
+                .body(Arrays.asList(FIRST, "00000000000000000000000000000013"))
+                .when().post("/resource/bundle")
+                .then()
+                .statusCode(404);
+
+        given()
+                .when().get("/resource/bundle")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    public void missingFileTest() throws IOException {
+        first = persist("bundle-first", "first in the tar", FIRST);
+        second = persist("bundle-second", "second", SECOND);
+        // still indexed, but the file is gone
+        Files.delete(artifactIndex.pathOf(artifactIndex.get(SECOND).get()));
+
+        String message = given()
+                .contentType("application/json")
+                .body(Arrays.asList(FIRST, SECOND))
+                .when().post("/resource/bundle")
+                .then()
+                .statusCode(404)
+                .extract().asString();
+        Assertions.assertTrue(message.contains(SECOND));
+        Assertions.assertFalse(message.contains(FIRST));
+    }
+
+    private Path persist(String prefix, String content, String checksum) throws IOException {
+        Path upstream = Files.createTempFile(prefix, ".txt");
+        Files.write(upstream, content.getBytes(StandardCharsets.UTF_8));
+        given()
+                .queryParam("url", upstream.toUri().toString())
+                .when().get("/resource/" + checksum)
+                .then()
+                .statusCode(200);
+        return upstream;
+    }
+
+    /**
+     * @return the content of the regular files by path, checking the header checksums and the end of the archive
+     */
+    private static Map<String, String> untar(byte[] tar) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        int offset = 0;
+        while (tar[offset] != 0) {
+            long sum = 0;
+            for (int i = 0; i < TarEntry.BLOCK; i++) {
+                sum += i >= 148 && i < 156 ? ' ' : tar[offset + i] & 0xff;
+            }
+            Assertions.assertEquals(sum, Long.parseLong(field(tar, offset + 148, 8), 8));
+            Assertions.assertEquals("ustar", field(tar, offset + 257, 6));
+
+            String name = field(tar, offset + 345, 155) + "/" + field(tar, offset, 100);
+            int size = Integer.parseInt(field(tar, offset + 124, 12), 8);
+            offset += TarEntry.BLOCK;
+            entries.put(name, new String(tar, offset, size, StandardCharsets.UTF_8));
+            offset += TarEntry.padded(size);
+        }
+        Assertions.assertEquals(tar.length, offset + TarEntry.END.length);
+        return entries;
+    }
+
+    private static String field(byte[] tar, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && tar[end] != 0) {
+            end++;
+        }
+        return new String(tar, offset, end - offset, StandardCharsets.US_ASCII).trim();
+    }
+}
@@ -0,0 +1,46 @@
+package org.kie.cekit.cacher.resources;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class ByteRangeTest {
+
+    @Test
+    public void parseTest() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-99, 500-, -100", 1000);
+        Assertions.assertEquals(3, ranges.size());
+        Assertions.assertEquals("bytes 0-99/1000", ranges.get(0).contentRange(1000));
+        Assertions.assertEquals("bytes 500-999/1000", ranges.get(1).contentRange(1000));
+        Assertions.assertEquals("bytes 900-999/1000", ranges.get(2).contentRange(1000));
+        Assertions.assertEquals(100, ranges.get(0).length());
+    }
+
+    @Test
+    public void clipTest() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=900-2000,-5000", 1000);
+        Assertions.assertEquals("bytes 900-999/1000", ranges.get(0).contentRange(1000));
+        Assertions.assertEquals("bytes 0-999/1000", ranges.get(1).contentRange(1000));
+    }
+
+    @Test
+    public void unsatisfiableTest() {
+        Assertions.assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+        Assertions.assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+    }
+
+    @Test
+    public void invalidTest() {
+        Assertions.assertNull(ByteRange.parse(null, 1000));
+        Assertions.assertNull(ByteRange.parse("items=0-1", 1000));
+        Assertions.assertNull(ByteRange.parse("bytes=10-5", 1000));
+        Assertions.assertNull(ByteRange.parse("bytes=a-b", 1000));
+        Assertions.assertNull(ByteRange.parse("bytes=0-1-2", 1000));
+        StringBuilder many = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= ByteRange.MAX_RANGES; i++) {
+            many.append(",").append(i).append("-").append(i);
+        }
+        Assertions.assertNull(ByteRange.parse(many.toString(), 1000));
+    }
+}
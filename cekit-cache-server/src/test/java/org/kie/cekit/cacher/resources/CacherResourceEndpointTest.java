@@ -3,19 +3,26 @@ package org.kie.cekit.cacher.resources;
 import io.quarkus.test.junit.QuarkusTest;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.objects.ArtifactMetadata;
 import org.kie.cekit.cacher.utils.CacherUtils;
 
 import javax.inject.Inject;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
 
 @QuarkusTest
 public class CacherResourceEndpointTest {
@@ -23,6 +30,9 @@ public class CacherResourceEndpointTest {
     @Inject
     CacherUtils cacherUtils;
 
+    @Inject
+    ArtifactIndex artifactIndex;
+
     String url = "https://repo1.maven.org/maven2/io/quarkus/quarkus-arc/0.15.0/quarkus-arc-0.15.0-javadoc.jar";
     final String wrongUrl = "test.testing";
 
@@ -71,4 +81,246 @@ public class CacherResourceEndpointTest {
         Assertions.assertFalse(cacherUtils.fileExists("bccc8db65cb5eae41084222c82a6131c"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testListingETag() {
+        String etag = given()
+                .when().get("/resource/")
+                .then()
+                .statusCode(200)
+                .extract().header("ETag");
+        Assertions.assertNotNull(etag);
+
+        given()
+                .header("If-None-Match", etag)
+                .when().get("/resource/")
+                .then()
+                .statusCode(304);
+
+        String checksum = "00000000000000000000000000000010";
+        artifactIndex.add(new ArtifactMetadata(checksum, "etag-test.zip"));
+        try {
+            given()
+                    .header("If-None-Match", etag)
+                    .when().get("/resource/")
+                    .then()
+                    .statusCode(200)
+                    .body(containsString("etag-test.zip"));
+        } finally {
+            artifactIndex.remove(checksum);
+        }
+    }
+
+    @Test
+    public void testReadThrough() throws IOException {
+        String checksum = "ed3158cb864720603a457f29f719a7df";
+        Path upstream = Files.createTempFile("read-through", ".txt");
+        Files.write(upstream, "read through".getBytes(StandardCharsets.UTF_8));
+        try {
+            given()
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(404);
+
+            given()
+                    .queryParam("url", upstream.toUri().toString())
+                    .when().get("/resource/not-a-checksum")
+                    .then()
+                    .statusCode(400);
+
+            // a wrong checksum is never stored
+            given()
+                    .queryParam("url", upstream.toUri().toString())
+                    .when().get("/resource/00000000000000000000000000000011");
+            Assertions.assertFalse(cacherUtils.fileExists("00000000000000000000000000000011"));
+            Assertions.assertFalse(cacherUtils.fileExists(checksum));
+
+            given()
+                    .queryParam("url", upstream.toUri().toString())
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(200)
+                    .body(is("read through"));
+            Assertions.assertTrue(cacherUtils.fileExists(checksum));
+
+            // then served from the cache
+            Files.delete(upstream);
+            given()
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(200)
+                    .body(is("read through"));
+        } finally {
+            Files.deleteIfExists(upstream);
+            cacherUtils.deleteArtifact(checksum);
+        }
+    }
+
+    @Test
+    public void testRangesAndHead() throws IOException {
+        String checksum = "8c77745106c2ee56cc888a74ff8552b4";
+        Path upstream = Files.createTempFile("ranges", ".txt");
+        Files.write(upstream, "ranges of bytes".getBytes(StandardCharsets.UTF_8));
+        try {
+            given()
+                    .queryParam("url", upstream.toUri().toString())
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(200);
+
+            given()
+                    .when().head("/resource/" + checksum)
+                    .then()
+                    .statusCode(200)
+                    .header("Content-Length", "15")
+                    .header("ETag", "\"" + checksum + "\"")
+                    .header("Accept-Ranges", "bytes");
+
+            given()
+                    .header("Range", "bytes=0-5")
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(206)
+                    .header("Content-Range", "bytes 0-5/15")
+                    .body(is("ranges"));
+
+            // resumed up to the end
+            given()
+                    .header("Range", "bytes=10-")
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(206)
+                    .header("Content-Range", "bytes 10-14/15")
+                    .body(is("bytes"));
+
+            String multipart = given()
+                    .header("Range", "bytes=0-5,-5")
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(206)
+                    .header("Content-Type", containsString("multipart/byteranges"))
+                    .extract().asString();
+            Assertions.assertTrue(multipart.contains("Content-Range: bytes 0-5/15\r\n\r\nranges"));
+            Assertions.assertTrue(multipart.contains("Content-Range: bytes 10-14/15\r\n\r\nbytes"));
+
+            given()
+                    .header("Range", "bytes=15-")
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(416)
+                    .header("Content-Range", "bytes */15");
+
+            // the artifact changed since the range was computed, it is sent whole
+            given()
+                    .header("Range", "bytes=0-5")
+                    .header("If-Range", "\"00000000000000000000000000000000\"")
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(200)
+                    .body(is("ranges of bytes"));
+
+            given()
+                    .header("If-None-Match", "\"" + checksum + "\"")
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(304);
+        } finally {
+            Files.deleteIfExists(upstream);
+            cacherUtils.deleteArtifact(checksum);
+        }
+    }
+
+    @Test
+    public void testLookup() throws IOException {
+        String checksum = "2bd4373f58362e66e6825d18b653597f";
+        String sha256 = "e27188a4113a78f5a14d82b34ca8d504a5ceea047dbc1d0d1d554d0fe4142cc3";
+        Path upstream = Files.createTempFile("lookup", ".txt");
+        Files.write(upstream, "looked up".getBytes(StandardCharsets.UTF_8));
+        try {
+            given()
+                    .queryParam("url", upstream.toUri().toString())
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(200);
+
+            given()
+                    .contentType("application/json")
+                    .body("[\"" + sha256 + "\", \"00000000000000000000000000000012\"]")
+                    .when().post("/resource/lookup")
+                    .then()
+                    .statusCode(200)
+                    .body("[0].checksum", is(sha256))
+                    .body("[0].available", is(true))
+                    .body("[0].md5", is(checksum))
+                    .body("[0].fileName", is(upstream.getFileName().toString()))
+                    .body("[0].size", is(9))
+                    .body("[1].checksum", is("00000000000000000000000000000012"))
+                    .body("[1].available", is(false));
+
+            given()
+                    .contentType("application/json")
+                    .body("[]")
+                    .when().post("/resource/lookup")
+                    .then()
+                    .statusCode(400);
+        } finally {
+            Files.deleteIfExists(upstream);
+            cacherUtils.deleteArtifact(checksum);
+        }
+    }
+
+    @Test
+    public void testByName() throws IOException {
+        String checksum = "a216d36508200681da3b5ed84602d880";
+        Path upstream = Files.createTempFile("by-name", ".txt");
+        Files.write(upstream, "found by name".getBytes(StandardCharsets.UTF_8));
+        String fileName = upstream.getFileName().toString();
+        try {
+            given()
+                    .queryParam("url", upstream.toUri().toString())
+                    .when().get("/resource/" + checksum)
+                    .then()
+                    .statusCode(200);
+
+            given()
+                    .when().get("/resource/by-name/" + fileName)
+                    .then()
+                    .statusCode(200)
+                    .header("ETag", "\"" + checksum + "\"")
+                    .body(is("found by name"));
+
+            given()
+                    .redirects().follow(false)
+                    .queryParam("redirect", true)
+                    .when().get("/resource/by-name/" + fileName)
+                    .then()
+                    .statusCode(307)
+                    .header("Location", containsString("/resource/" + checksum));
+
+            given()
+                    .queryParam("prefix", fileName.substring(0, fileName.length() - 4))
+                    .when().get("/resource/by-name")
+                    .then()
+                    .statusCode(200)
+                    .body("size()", is(1))
+                    .body("[0].fileName", is(fileName))
+                    .body("[0].checksum", is(checksum));
+
+            given()
+                    .when().get("/resource/by-name/missing-" + fileName)
+                    .then()
+                    .statusCode(404);
+
+            // the transfer slots are given back once the artifacts are sent
+            given()
+                    .when().get("/resource/serving")
+                    .then()
+                    .statusCode(200)
+                    .body("activeTransfers", is(0))
+                    .body("accepted", greaterThan(0))
+                    .body("rejectedBusy", is(0));
+        } finally {
+            Files.deleteIfExists(upstream);
+            cacherUtils.deleteArtifact(checksum);
+        }
+    }
+}
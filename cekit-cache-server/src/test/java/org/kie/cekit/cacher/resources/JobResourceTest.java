@@ -0,0 +1,74 @@
+package org.kie.cekit.cacher.resources;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.response.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.objects.FetchRequest;
+import org.kie.cekit.cacher.utils.CacherUtils;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+
+@QuarkusTest
+public class JobResourceTest {
+
+    // md5 of "hello"
+    private static final String CHECKSUM = "5d41402abc4b2a76b9719d911017c592";
+
+    @Inject
+    CacherUtils cacherUtils;
+
+    private Path source;
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        cacherUtils.deleteArtifact(CHECKSUM);
+        if (null != source) {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Test
+    public void fetchJobTest() throws IOException {
+        source = Files.createTempFile("job-test", ".txt");
+        Files.write(source, "hello".getBytes());
+        String url = source.toUri().toString();
+
+        Response accepted = given()
+                .contentType("application/json")
+                .body(Arrays.asList(new FetchRequest(url, CHECKSUM),
+                        new FetchRequest(url, "0000000000000000000000000000000f"),
+                        new FetchRequest("not a url", null)))
+                .when().post("/resource/jobs")
+                .then()
+                .statusCode(202)
+                .body("total", is(3))
+                .extract().response();
+        Assertions.assertNotNull(accepted.header("Location"));
+
+        String id = accepted.path("id");
+        given()
+                .when().get("/resource/jobs/" + id + "?wait=30")
+                .then()
+                .statusCode(200)
+                .body("state", is("COMPLETED"))
+                .body("completed", is(1))
+                .body("failed", is(2))
+                .body("items[0].checksum", is(CHECKSUM))
+                .body("items[1].state", is("FAILED"))
+                .body("items[2].message", is("Invalid url not a url"));
+
+        given()
+                .when().get("/resource/jobs/unknown")
+                .then()
+                .statusCode(404);
+    }
+}
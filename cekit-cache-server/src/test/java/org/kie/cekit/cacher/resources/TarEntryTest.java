@@ -0,0 +1,50 @@
+package org.kie.cekit.cacher.resources;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class TarEntryTest {
+
+    private static final String DIRECTORY = "5d41402abc4b2a76b9719d911017c592";
+
+    @Test
+    public void headerTest() {
+        TarEntry entry = new TarEntry(DIRECTORY, "hello.txt", 5, 1000_000);
+        byte[] headers = entry.headers();
+        Assertions.assertEquals(TarEntry.BLOCK, headers.length);
+        Assertions.assertEquals("hello.txt", new String(headers, 0, 9, StandardCharsets.US_ASCII));
+        Assertions.assertEquals("00000000005", new String(headers, 124, 11, StandardCharsets.US_ASCII));
+        Assertions.assertEquals("00000001750", new String(headers, 136, 11, StandardCharsets.US_ASCII));
+        Assertions.assertEquals(DIRECTORY, new String(headers, 345, 32, StandardCharsets.US_ASCII));
+        Assertions.assertEquals(2 * TarEntry.BLOCK, entry.length());
+        Assertions.assertEquals(TarEntry.BLOCK - 5, entry.padding().length);
+    }
+
+    @Test
+    public void longNameTest() {
+        char[] name = new char[150];
+        Arrays.fill(name, 'a');
+        TarEntry entry = new TarEntry(DIRECTORY, new String(name), 10, 0);
+        byte[] headers = entry.headers();
+        Assertions.assertEquals(3 * TarEntry.BLOCK, headers.length);
+        Assertions.assertEquals('L', headers[156]);
+        Assertions.assertEquals(DIRECTORY + "/" + new String(name),
+                                new String(headers, TarEntry.BLOCK, 32 + 1 + 150, StandardCharsets.UTF_8));
+        Assertions.assertEquals(4 * TarEntry.BLOCK, entry.length());
+    }
+
+    @Test
+    public void bigSizeTest() {
+        long size = 10L * 1024 * 1024 * 1024;
+        byte[] headers = new TarEntry(DIRECTORY, "big.zip", size, 0).headers();
+        Assertions.assertEquals((byte) 0x80, headers[124]);
+        long decoded = 0;
+        for (int i = 128; i < 136; i++) {
+            decoded = decoded << 8 | (headers[i] & 0xff);
+        }
+        Assertions.assertEquals(size, decoded);
+    }
+}
@@ -0,0 +1,133 @@
+package org.kie.cekit.cacher.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Random;
+
+public class ArtifactDigesterTest {
+
+    @Test
+    public void transferAndDigestTest() throws IOException {
+        // bigger than the buffer so more than one read is needed
+        byte[] content = new byte[ArtifactDigester.BUFFER_SIZE * 2 + 17];
+        new Random(42).nextBytes(content);
+        Path target = Files.createTempFile("digester", ".bin");
+        try {
+            ArtifactDigester digester = new ArtifactDigester();
+            try (ReadableByteChannel source = Channels.newChannel(new ByteArrayInputStream(content));
+                 FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                Assertions.assertEquals(content.length, digester.transfer(source, channel));
+            }
+            String streamed = digester.md5();
+
+            ArtifactDigester fromFile = new ArtifactDigester();
+            fromFile.digest(target);
+
+            Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+            Assertions.assertEquals(streamed, fromFile.md5());
+            Assertions.assertEquals(digester.sha1(), fromFile.sha1());
+            Assertions.assertEquals(digester.sha256(), fromFile.sha256());
+
+            ArtifactDigester hello = new ArtifactDigester();
+            hello.update(ByteBuffer.wrap("hello".getBytes()));
+            Assertions.assertEquals("5d41402abc4b2a76b9719d911017c592", hello.md5());
+            Assertions.assertEquals("aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434d", hello.sha1());
+            Assertions.assertEquals("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824", hello.sha256());
+        } finally {
+            Files.deleteIfExists(target);
+        }
+    }
+
+    /**
+     * Compares the previous download path (transferFrom then read the file back to hash it)
+     * with the single pass one. Run it with:
+     * mvn test -Dtest=ArtifactDigesterTest -Dcacher.benchmark=true [-Dcacher.benchmark.sizes=100,500,2000]
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "cacher.benchmark", matches = "true")
+    public void singlePassVersusTwoPassBenchmark() throws Exception {
+        for (String size : System.getProperty("cacher.benchmark.sizes", "100,500,2000").split(",")) {
+            long bytes = Long.parseLong(size.trim()) * 1024 * 1024;
+            Path source = createSourceFile(bytes);
+            Path target = source.resolveSibling(source.getFileName() + ".copy");
+            try {
+                long start = System.nanoTime();
+                String twoPass;
+                try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    out.transferFrom(Channels.newChannel(Channels.newInputStream(in)), 0, Long.MAX_VALUE);
+                    out.force(true);
+                }
+                twoPass = md5With4kBlocks(target);
+                long twoPassMillis = (System.nanoTime() - start) / 1_000_000;
+                Files.delete(target);
+
+                start = System.nanoTime();
+                ArtifactDigester digester = new ArtifactDigester();
+                try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    digester.transfer(Channels.newChannel(Channels.newInputStream(in)), out);
+                    out.force(true);
+                }
+                String singlePass = digester.md5();
+                long singlePassMillis = (System.nanoTime() - start) / 1_000_000;
+
+                Assertions.assertEquals(twoPass, singlePass);
+                System.out.println(String.format("%s MB: two pass %d ms, single pass %d ms", size.trim(), twoPassMillis, singlePassMillis));
+            } finally {
+                Files.deleteIfExists(source);
+                Files.deleteIfExists(target);
+            }
+        }
+    }
+
+    private Path createSourceFile(long bytes) throws IOException {
+        Path file = Files.createTempFile("digester-benchmark", ".bin");
+        Random random = new Random();
+        ByteBuffer buffer = ByteBuffer.allocate(ArtifactDigester.BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            long written = 0;
+            while (written < bytes) {
+                random.nextBytes(buffer.array());
+                buffer.limit((int) Math.min(buffer.capacity(), bytes - written));
+                written += channel.write(buffer);
+                buffer.clear();
+            }
+        }
+        return file;
+    }
+
+    private String md5With4kBlocks(Path file) throws Exception {
+        MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+        try (InputStream input = new FileInputStream(file.toFile())) {
+            byte[] block = new byte[4096];
+            int length;
+            while ((length = input.read(block)) > 0) {
+                messageDigest.update(block, 0, length);
+            }
+        }
+        return hex(messageDigest.digest());
+    }
+
+    private String hex(byte[] digest) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+}